@@ -5,6 +5,7 @@
 
 package net.minecraftforge.gradle.common.legacy;
 
+import net.minecraftforge.gradle.common.util.MappingCache;
 import net.minecraftforge.srgutils.IMappingFile;
 import org.gradle.api.DefaultTask;
 import org.gradle.api.file.RegularFileProperty;
@@ -27,7 +28,7 @@ public abstract class FormatSRG extends DefaultTask {
 
     @TaskAction
     public void apply() throws IOException {
-        IMappingFile input = IMappingFile.load(getSrg().get().getAsFile());
+        IMappingFile input = MappingCache.load(getSrg().get().getAsFile());
         input.write(getOutput().get().getAsFile().toPath(), getFormat().get(), false);
     }
 
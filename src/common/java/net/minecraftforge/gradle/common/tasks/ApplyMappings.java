@@ -5,26 +5,39 @@
 
 package net.minecraftforge.gradle.common.tasks;
 
+import net.minecraftforge.gradle.common.util.HashFunction;
+import net.minecraftforge.gradle.common.util.IncrementalIndex;
+import net.minecraftforge.gradle.common.util.MappingCache;
 import net.minecraftforge.gradle.common.util.McpNames;
-import net.minecraftforge.gradle.common.util.Utils;
+import net.minecraftforge.gradle.common.util.RawZipFile;
 
-import org.apache.commons.io.IOUtils;
 import org.gradle.api.DefaultTask;
 import org.gradle.api.file.RegularFileProperty;
 import org.gradle.api.tasks.Input;
 import org.gradle.api.tasks.InputFile;
+import org.gradle.api.tasks.Internal;
 import org.gradle.api.tasks.OutputFile;
 import org.gradle.api.tasks.TaskAction;
 
-import java.io.FileOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
-import java.util.zip.ZipFile;
-import java.util.zip.ZipOutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.Map;
 
+/**
+ * Renames the SRG names in a zip of sources to MCP names.
+ *
+ * <p>Unless {@linkplain #setIncremental(boolean) disabled}, the hash of every input file is kept in an index in the
+ * task's temporary directory. Later runs with the same mappings and settings copy the files that did not change from
+ * the previous output, and only rename the rest.</p>
+ */
 public abstract class ApplyMappings extends DefaultTask {
     private boolean javadocs = false;
     private boolean lambdas = true;
+    private boolean incremental = true;
 
     public ApplyMappings() {
         getOutput().convention(getProject().getLayout().getBuildDirectory().dir(getName()).map(s -> s.file("output.zip")));
@@ -32,26 +45,41 @@ public abstract class ApplyMappings extends DefaultTask {
 
     @TaskAction
     public void apply() throws IOException {
-        McpNames names = McpNames.load(getMappings().get().getAsFile());
-
-        try (ZipFile zin = new ZipFile(getInput().get().getAsFile())) {
-            try (FileOutputStream fos = new FileOutputStream(getOutput().get().getAsFile());
-                 ZipOutputStream out = new ZipOutputStream(fos)) {
-                zin.stream().forEach(e -> {
-                    try {
-                        out.putNextEntry(Utils.getStableEntry(e.getName()));
-                        if (!e.getName().endsWith(".java")) {
-                            IOUtils.copy(zin.getInputStream(e), out);
-                        } else {
-                            out.write(names.rename(zin.getInputStream(e), javadocs, lambdas).getBytes(StandardCharsets.UTF_8));
-                        }
-                        out.closeEntry();
-                    } catch (IOException e1) {
-                        throw new RuntimeException(e1);
-                    }
-                });
+        File input = getInput().get().getAsFile();
+        File output = getOutput().get().getAsFile();
+        File mappings = getMappings().get().getAsFile();
+        McpNames names = MappingCache.loadNames(getProject(), mappings);
+
+        long start = System.currentTimeMillis();
+        int count;
+        if (!incremental) {
+            count = names.renameZip(input, output, name -> javadocs, lambdas, StandardCharsets.UTF_8);
+        } else {
+            IncrementalIndex index = new IncrementalIndex(new File(getTemporaryDir(), "index.json"), getLogger());
+            File previous = new File(getTemporaryDir(), "previous.zip");
+            String settings = HashFunction.SHA1.hash(String.join("\n", HashFunction.SHA1.hash(mappings),
+                    Boolean.toString(javadocs), Boolean.toString(lambdas)));
+            Map<String, String> files = IncrementalIndex.hashFiles(input.toPath());
+
+            Map<String, String> old = index.load(settings, output.toPath());
+            if (old != null)
+                Files.move(output.toPath(), previous.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            else
+                old = Collections.emptyMap();
+
+            Map<String, String> unchanged = old;
+            try (RawZipFile prev = previous.exists() ? new RawZipFile(previous) : null) {
+                count = names.renameZip(input, output, name -> javadocs, lambdas, StandardCharsets.UTF_8,
+                        prev, name -> unchanged.containsKey(name) && unchanged.get(name).equals(files.get(name)));
+            } finally {
+                if (previous.exists() && !previous.delete())
+                    getLogger().warn("Could not delete previous output: {}", previous);
             }
+
+            index.save(settings, files, output.toPath());
         }
+        long time = Math.max(1, System.currentTimeMillis() - start);
+        getLogger().info("Renamed {} files in {}ms ({} files/s)", count, time, count * 1000L / time);
     }
 
     @InputFile
@@ -63,6 +91,18 @@ public abstract class ApplyMappings extends DefaultTask {
     @OutputFile
     public abstract RegularFileProperty getOutput();
 
+    /**
+     * Only rename the files that changed since the last run, see the class docs.
+     */
+    @Internal
+    public boolean isIncremental() {
+        return incremental;
+    }
+
+    public void setIncremental(boolean incremental) {
+        this.incremental = incremental;
+    }
+
     @Input
     public boolean getJavadocs() {
         return this.javadocs;
@@ -5,22 +5,57 @@
 
 package net.minecraftforge.gradle.common.tasks;
 
+import net.minecraftforge.gradle.common.util.DigestCache;
+import net.minecraftforge.gradle.common.util.HashFunction;
+import net.minecraftforge.gradle.common.util.IncrementalIndex;
+import net.minecraftforge.gradle.common.util.RawZipFile;
+import net.minecraftforge.gradle.common.util.RawZipWriter;
 import net.minecraftforge.gradle.common.util.Utils;
 
+import org.apache.commons.io.FileUtils;
 import org.gradle.api.file.ConfigurableFileCollection;
 import org.gradle.api.file.RegularFileProperty;
 import org.gradle.api.tasks.Input;
 import org.gradle.api.tasks.InputFile;
 import org.gradle.api.tasks.InputFiles;
+import org.gradle.api.tasks.Internal;
 import org.gradle.api.tasks.OutputFile;
+import org.gradle.api.tasks.TaskAction;
 
 import com.google.common.collect.ImmutableMap;
-import com.google.common.collect.ImmutableMultimap;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+import javax.annotation.Nullable;
+
+/**
+ * Applies a range map from {@link ExtractRangeMap} to the sources, renaming every symbol reference using the SRG files.
+ *
+ * <p>Unless {@linkplain #setIncremental(boolean) disabled}, the hash of every source file and of its section of the
+ * range map is kept in an index in the task's temporary directory. Later runs with the same SRG and EXC files and
+ * settings only pass the files where either changed to Srg2Source, and copy the rest from the previous output. This
+ * needs every source to be a directory; anything else, or a range map that can't be split by file, applies everything.</p>
+ */
 public abstract class ApplyRangeMap extends JarExec {
     public boolean annotate = false;
     public boolean keepImports = true;
+    private boolean incremental = true;
+    // Set while only the changed files are applied
+    @Nullable
+    private File stagedInput;
+    @Nullable
+    private File stagedOutput;
 
     public ApplyRangeMap() {
         getTool().set(Utils.SRG2SOURCE);
@@ -35,17 +70,187 @@ public abstract class ApplyRangeMap extends JarExec {
     protected List<String> filterArgs(List<String> args) {
         return replaceArgs(args, ImmutableMap.of(
                 "{range}", getRangeMap().get().getAsFile(),
-                "{output}", getOutput().get().getAsFile(),
+                "{output}", stagedOutput != null ? stagedOutput : getOutput().get().getAsFile(),
                 "{annotate}", annotate,
                 "{keepImports}", keepImports
                 ), ImmutableMap.of(
-                "{input}", getSources().getFiles(),
+                "{input}", stagedInput != null ? Collections.singleton(stagedInput) : getSources().getFiles(),
                 "{srg}", getSrgFiles().getFiles(),
                 "{exc}", getExcFiles().getFiles()
                 )
         );
     }
 
+    @Override
+    @TaskAction
+    public void apply() throws IOException {
+        if (!incremental) {
+            super.apply();
+            return;
+        }
+
+        File output = getOutput().get().getAsFile();
+        IncrementalIndex index = new IncrementalIndex(new File(getTemporaryDir(), "index.json"), getLogger());
+        Map<String, File> sources = findSources();
+        Map<String, String> sections = sources == null ? null : hashSections(getRangeMap().get().getAsFile());
+        if (sources == null || sections == null) {
+            getLogger().info("Sources can not be applied per file, applying everything");
+            applyAll(index);
+            return;
+        }
+
+        String settings = HashFunction.SHA1.hash(String.join("\n", HashFunction.SHA1.hash(getSrgFiles().getFiles()),
+                HashFunction.SHA1.hash(getExcFiles().getFiles()), getResolvedVersion(), Boolean.toString(annotate), Boolean.toString(keepImports)));
+        Map<String, String> files = new TreeMap<>();
+        for (Map.Entry<String, File> kv : sources.entrySet()) {
+            String section = sections.get(kv.getKey());
+            if (section == null && kv.getKey().endsWith(".java")) {
+                getLogger().info("No ranges found for {}, applying everything", kv.getKey());
+                applyAll(index);
+                return;
+            }
+            files.put(kv.getKey(), DigestCache.hash(kv.getValue(), HashFunction.SHA1) + ':' + (section == null ? "" : section));
+        }
+
+        Map<String, String> old = index.load(settings, output.toPath());
+        Set<String> changed = old == null ? null : IncrementalIndex.changed(files, old);
+        // Removed files are simply left out of the output
+        if (changed != null)
+            changed.retainAll(files.keySet());
+
+        if (changed == null || changed.size() == files.size()) {
+            getLogger().info("Applying range map to all files");
+            super.apply();
+        } else {
+            getLogger().lifecycle("Applying range map to {} changed files", changed.size());
+            applyChanged(sources, changed, output);
+        }
+
+        index.save(settings, files, output.toPath());
+    }
+
+    private void applyAll(IncrementalIndex index) throws IOException {
+        super.apply();
+        index.delete();
+    }
+
+    private void applyChanged(Map<String, File> sources, Set<String> changed, File output) throws IOException {
+        File temp = new File(getTemporaryDir(), "incremental");
+        FileUtils.deleteDirectory(temp);
+        try {
+            File previous = new File(temp, "previous.zip");
+            FileUtils.moveFile(output, previous);
+
+            if (!changed.isEmpty()) {
+                stagedInput = new File(temp, "input");
+                stagedOutput = new File(temp, "output.zip");
+                for (String name : changed)
+                    FileUtils.copyFile(sources.get(name), new File(stagedInput, name));
+                try {
+                    super.apply();
+                } finally {
+                    stagedInput = null;
+                    stagedOutput = null;
+                }
+            }
+
+            // Every file that still exists, sorted by name, changed ones from this run and the rest from the last
+            File applied = new File(temp, "output.zip");
+            try (RawZipFile prev = new RawZipFile(previous);
+                 RawZipFile next = changed.isEmpty() ? null : new RawZipFile(applied);
+                 RawZipWriter zout = new RawZipWriter(output)) {
+                for (String name : sources.keySet()) {
+                    RawZipFile zip = changed.contains(name) ? next : prev;
+                    RawZipFile.Entry entry = zip.getEntry(name);
+                    if (entry != null)
+                        zout.copyEntry(zip, entry);
+                    else if (name.endsWith(".java"))
+                        throw new IOException("Range map output is missing " + name + ", run with incremental disabled");
+                }
+            }
+        } finally {
+            FileUtils.deleteDirectory(temp);
+        }
+    }
+
+    /*
+     * The source files by their path relative to their source directory, or null if any source isn't a directory.
+     */
+    @Nullable
+    private Map<String, File> findSources() throws IOException {
+        Map<String, File> ret = new TreeMap<>();
+        for (File dir : getSources().getFiles()) {
+            if (!dir.exists())
+                continue;
+            if (!dir.isDirectory())
+                return null;
+            Path root = dir.toPath();
+            try (Stream<Path> walk = Files.walk(root)) {
+                for (Path file : walk.filter(Files::isRegularFile).collect(Collectors.toList())) {
+                    // Two source directories with the same file can't be told apart in the output
+                    if (ret.put(root.relativize(file).toString().replace('\\', '/'), file.toFile()) != null)
+                        return null;
+                }
+            }
+        }
+        return ret;
+    }
+
+    /*
+     * The hash of each file's section of the range map, which starts with a "start" line naming the file and ends with
+     * an "end" line. Returns null if the range map doesn't look like that. The named path may have the source directory
+     * in front, so the section is also stored under every shorter path, to be looked up by the relative path.
+     */
+    @Nullable
+    private static Map<String, String> hashSections(File rangeMap) throws IOException {
+        Map<String, String> ret = new TreeMap<>();
+        try (BufferedReader reader = Files.newBufferedReader(rangeMap.toPath(), StandardCharsets.UTF_8)) {
+            String file = null;
+            StringBuilder section = new StringBuilder();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String trimmed = line.trim();
+                if (file == null) {
+                    if (trimmed.isEmpty() || trimmed.startsWith("#"))
+                        continue;
+                    String[] pts = trimmed.split(" ");
+                    if (!"start".equals(pts[0]) || pts.length < 2)
+                        return null;
+                    file = unquote(pts[1]);
+                    section.setLength(0);
+                } else if ("end".equals(trimmed)) {
+                    String hash = HashFunction.SHA1.hash(section.toString());
+                    String path = file.replace('\\', '/');
+                    ret.put(path, hash);
+                    for (int idx = path.indexOf('/'); idx != -1; idx = path.indexOf('/', idx + 1))
+                        ret.putIfAbsent(path.substring(idx + 1), hash);
+                    file = null;
+                } else {
+                    section.append(line).append('\n');
+                }
+            }
+            if (file != null)
+                return null;
+        }
+        return ret;
+    }
+
+    private static String unquote(String value) {
+        return value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"") ? value.substring(1, value.length() - 1) : value;
+    }
+
+    /**
+     * Only apply the range map to the files that changed since the last run, see the class docs.
+     */
+    @Internal
+    public boolean isIncremental() {
+        return incremental;
+    }
+
+    public void setIncremental(boolean incremental) {
+        this.incremental = incremental;
+    }
+
     @InputFiles
     public abstract ConfigurableFileCollection getSrgFiles();
 
@@ -5,13 +5,17 @@
 
 package net.minecraftforge.gradle.common.tasks;
 
+import net.minecraftforge.gradle.common.util.DigestCache;
+import net.minecraftforge.gradle.common.util.DownloadUtils;
 import net.minecraftforge.gradle.common.util.HashFunction;
 import net.minecraftforge.gradle.common.util.Utils;
 import net.minecraftforge.gradle.common.util.VersionJson;
 
 import org.apache.commons.io.FileUtils;
 import org.gradle.api.DefaultTask;
+import org.gradle.api.file.DirectoryProperty;
 import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.logging.Logger;
 import org.gradle.api.provider.Property;
 import org.gradle.api.tasks.InputFile;
 import org.gradle.api.tasks.Internal;
@@ -19,67 +23,113 @@ import org.gradle.api.tasks.OutputDirectory;
 import org.gradle.api.tasks.TaskAction;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.net.HttpURLConnection;
 import java.net.URL;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 public abstract class DownloadAssets extends DefaultTask {
+    public static final String OBJECT_STORE_PROP = "net.minecraftforge.gradle.assetStore";
+    private static final int BUFFER_SIZE = 8192;
+
     public DownloadAssets() {
         getAssetRepository().convention("https://resources.download.minecraft.net/");
         getConcurrentDownloads().convention(8);
+        getObjectStore().convention(getProject().getProviders().gradleProperty(OBJECT_STORE_PROP)
+                .map(path -> getProject().getLayout().getProjectDirectory().dir(path)));
     }
 
     @TaskAction
     public void run() throws IOException, InterruptedException {
-        AssetIndex index = Utils.loadJson(getIndex(), AssetIndex.class);
+        File indexFile = getIndex();
+        AssetIndex index = Utils.loadJson(indexFile, AssetIndex.class);
         List<String> keys = new ArrayList<>(index.objects.keySet());
         Collections.sort(keys);
         removeDuplicateRemotePaths(keys, index);
 
+        File store = getObjectStore().isPresent() ? getObjectStore().get().getAsFile() : null;
+        if (store != null) {
+            // Record the index in the store before adding any objects, so pruning never sees objects without an index referencing them
+            File storedIndex = new File(store, "indexes/" + indexFile.getName());
+            if (!storedIndex.exists() || !HashFunction.SHA1.hash(storedIndex).equals(HashFunction.SHA1.hash(indexFile))) {
+                Files.createDirectories(storedIndex.getParentFile().toPath());
+                Files.copy(indexFile.toPath(), storedIndex.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+
         File assetsPath = new File(Utils.getMCDir(), "/assets/objects");
         ExecutorService executorService = Executors.newFixedThreadPool(getConcurrentDownloads().get());
         CopyOnWriteArrayList<String> failedDownloads = new CopyOnWriteArrayList<>();
         String assetRepo = getAssetRepository().get();
+        Logger logger = getProject().getLogger();
+        Progress progress = new Progress(logger, keys.size());
         for (String key : keys) {
             Asset asset = index.objects.get(key);
             File target = Utils.getCache(getProject(), "assets", "objects", asset.getPath());
-            if (!target.exists() || !HashFunction.SHA1.hash(target).equals(asset.hash)) {
-                URL url = new URL(assetRepo + asset.getPath());
-                Runnable copyURLtoFile = () -> {
-                    try {
-                        File localFile = FileUtils.getFile(assetsPath + File.separator + asset.getPath());
-                        if (localFile.exists()) {
-                            getProject().getLogger().lifecycle("Copying local object: " + asset.getPath() + " Asset: " + key);
-                            FileUtils.copyFile(localFile, target);
-                        } else {
-                            getProject().getLogger().lifecycle("Downloading: " + url + " Asset: " + key);
-                            FileUtils.copyURLToFile(url, target, 10_000, 5_000);
-                        }
-                        if (!HashFunction.SHA1.hash(target).equals(asset.hash)) {
-                            failedDownloads.add(key);
-                            Utils.delete(target);
-                            getProject().getLogger().error("{} Hash failed.", key);
-                        }
-                    } catch (IOException e) {
-                        failedDownloads.add(key);
-                        getProject().getLogger().error("{} Failed.", key);
-                        e.printStackTrace();
+            // Existing files are verified by the workers, and only hashed if the size already matches
+            executorService.execute(() -> {
+                try {
+                    if (asset.isValid(target)) {
+                        progress.skipped();
+                        return;
                     }
-                };
-                executorService.execute(copyURLtoFile);
-            }
+
+                    File localFile = FileUtils.getFile(assetsPath + File.separator + asset.getPath());
+                    File stored = store == null ? target : new File(store, "objects/" + asset.getPath());
+                    if (store != null && asset.isValid(stored)) {
+                        logger.info("Using stored object: " + asset.getPath() + " Asset: " + key);
+                    } else if (localFile.exists() && store != null && asset.isValid(localFile) && link(localFile, stored)) {
+                        logger.info("Linked local object: " + asset.getPath() + " Asset: " + key);
+                    } else if (localFile.exists()) {
+                        logger.info("Copying local object: " + asset.getPath() + " Asset: " + key);
+                        copy(localFile, stored, asset, progress);
+                    } else {
+                        URL url = new URL(assetRepo + asset.getPath());
+                        logger.info("Downloading: " + url + " Asset: " + key);
+                        download(url, stored, asset, progress);
+                    }
+
+                    if (stored == target) {
+                        progress.fetched();
+                    } else if (link(stored, target)) {
+                        progress.linked();
+                    } else {
+                        // Different file system than the store, or links aren't supported, so the bytes have to be copied after all
+                        copy(stored, target, asset, progress);
+                        progress.fetched();
+                    }
+                } catch (IOException e) {
+                    failedDownloads.add(key);
+                    logger.error("{} Failed: {}", key, e.getMessage());
+                    logger.debug(key + " Failed", e);
+                }
+            });
         }
         executorService.shutdown();
         executorService.awaitTermination(8, TimeUnit.HOURS);
+        progress.finish();
         if (!failedDownloads.isEmpty()) {
             String errorMessage = "";
             for (String key : failedDownloads) {
@@ -90,6 +140,107 @@ public abstract class DownloadAssets extends DefaultTask {
         }
     }
 
+    /*
+     * Replaces the target with a hard link to the source. Objects are immutable and named by their hash, so sharing
+     * the same file is safe, and deleting one of the links later doesn't affect the others.
+     */
+    private static boolean link(File source, File target) {
+        Path link = new File(target.getAbsolutePath() + ".link").toPath();
+        try {
+            Files.createDirectories(link.getParent());
+            Files.deleteIfExists(link);
+            Files.createLink(link, source.toPath());
+            try {
+                Files.move(link, target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(link, target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            return true;
+        } catch (IOException | UnsupportedOperationException | SecurityException e) {
+            return false;
+        }
+    }
+
+    /*
+     * Resumes from what an earlier attempt of this download wrote if the server supports ranges. Goes through
+     * DownloadUtils, which limits the connections per host, retries failed attempts and counts the bytes for the report.
+     */
+    private static void download(URL url, File target, Asset asset, Progress progress) throws IOException {
+        Path part = createPart(target);
+        try {
+            DownloadUtils.download(url, c -> {
+                c.setConnectTimeout(10_000);
+                c.setReadTimeout(5_000);
+                // Assets are compared to their raw size, and are mostly already compressed anyway
+                c.setRequestProperty("Accept-Encoding", "identity");
+                File partial = part.toFile();
+                long offset = partial.exists() && asset.size > 0 && partial.length() < asset.size ? partial.length() : 0;
+                if (offset > 0)
+                    c.setRequestProperty("Range", "bytes=" + offset + "-");
+            }, (con, in) -> transfer(in, part, target, asset, con.getResponseCode() == HttpURLConnection.HTTP_PARTIAL, progress));
+        } finally {
+            Files.deleteIfExists(part);
+        }
+    }
+
+    private static void copy(File source, File target, Asset asset, Progress progress) throws IOException {
+        Path part = createPart(target);
+        try (InputStream in = new FileInputStream(source)) {
+            transfer(in, part, target, asset, false, progress);
+        } finally {
+            Files.deleteIfExists(part);
+        }
+    }
+
+    /*
+     * Every write gets its own file next to the target. The store is shared between builds, which may be fetching the
+     * same object at the same time, so a fixed name would have them write over each other.
+     */
+    private static Path createPart(File target) throws IOException {
+        Path dir = target.getAbsoluteFile().getParentFile().toPath();
+        Files.createDirectories(dir);
+        return Files.createTempFile(dir, target.getName() + '.', ".part");
+    }
+
+    /*
+     * Writes to the part file while hashing, and only moves it into place once it is verified.
+     */
+    private static void transfer(InputStream in, Path part, File target, Asset asset, boolean resume, Progress progress) throws IOException {
+        MessageDigest digest = HashFunction.SHA1.get();
+        if (resume) {
+            try (InputStream existing = Files.newInputStream(part)) {
+                byte[] buf = new byte[BUFFER_SIZE];
+                int read;
+                while ((read = existing.read(buf)) != -1)
+                    digest.update(buf, 0, read);
+            }
+        }
+
+        try (OutputStream out = resume ? Files.newOutputStream(part, StandardOpenOption.APPEND) : Files.newOutputStream(part)) {
+            byte[] buf = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = in.read(buf)) != -1) {
+                out.write(buf, 0, read);
+                digest.update(buf, 0, read);
+                progress.transferred(read);
+            }
+        }
+
+        String hash = HashFunction.SHA1.pad(new BigInteger(1, digest.digest()).toString(16));
+        if (!asset.matchesSize(Files.size(part)) || !hash.equals(asset.hash)) {
+            Files.delete(part);
+            throw new IOException("Hash failed, expected " + asset.hash + " (" + asset.size + " bytes) got " + hash);
+        }
+
+        try {
+            Files.move(part, target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(part, target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        // Already verified, so the next build doesn't read the object again to check it
+        DigestCache.put(target, Collections.singletonMap(HashFunction.SHA1, hash));
+    }
+
     // Some keys may reference the same remote file. Remove these duplicates to prevent two threads
     // writing to the same file on disk.
     private static void removeDuplicateRemotePaths(List<String> keys, AssetIndex index) {
@@ -119,17 +270,94 @@ public abstract class DownloadAssets extends DefaultTask {
     @Internal
     public abstract Property<Integer> getConcurrentDownloads();
 
+    /**
+     * A directory shared between projects and Gradle user homes to store asset objects and indexes in, laid out like
+     * the launcher's assets directory. Objects are hard linked from the store into this task's output instead of being
+     * downloaded or copied again. Defaults to the {@value #OBJECT_STORE_PROP} Gradle property, and is not used if unset.
+     */
+    @Internal
+    public abstract DirectoryProperty getObjectStore();
+
     @OutputDirectory
     public File getOutput() {
         return Utils.getCache(getProject(), "assets");
     }
 
-    private static class AssetIndex {
+    /*
+     * Thread safe counters, logged at most every few seconds so thousands of small objects don't flood the console.
+     */
+    private static class Progress {
+        private static final long INTERVAL = TimeUnit.SECONDS.toNanos(5);
+
+        private final Logger logger;
+        private final int total;
+        private final long start = System.nanoTime();
+        private final AtomicLong nextReport = new AtomicLong(start + INTERVAL);
+        private final AtomicLong bytes = new AtomicLong();
+        private final AtomicInteger fetched = new AtomicInteger();
+        private final AtomicInteger linked = new AtomicInteger();
+        private final AtomicInteger skipped = new AtomicInteger();
+
+        private Progress(Logger logger, int total) {
+            this.logger = logger;
+            this.total = total;
+        }
+
+        void transferred(int count) {
+            bytes.addAndGet(count);
+        }
+
+        void fetched() {
+            fetched.incrementAndGet();
+            report();
+        }
+
+        void linked() {
+            linked.incrementAndGet();
+            report();
+        }
+
+        void skipped() {
+            skipped.incrementAndGet();
+            report();
+        }
+
+        private void report() {
+            long now = System.nanoTime();
+            long next = nextReport.get();
+            if (now >= next && nextReport.compareAndSet(next, now + INTERVAL))
+                logger.lifecycle("Assets: " + (fetched.get() + linked.get() + skipped.get()) + "/" + total + ", " + describeTransfer(now));
+        }
+
+        void finish() {
+            logger.lifecycle("Assets: " + fetched.get() + " fetched, " + linked.get() + " linked, " + skipped.get() + " up to date, " + describeTransfer(System.nanoTime()));
+        }
+
+        private String describeTransfer(long now) {
+            double seconds = Math.max(now - start, 1) / 1_000_000_000D;
+            double megabytes = bytes.get() / (1024D * 1024D);
+            return String.format(Locale.ROOT, "%.1f MB in %.1fs (%.1f MB/s)", megabytes, seconds, megabytes / seconds);
+        }
+    }
+
+    static class AssetIndex {
         Map<String, Asset> objects;
     }
 
-    private static class Asset {
+    static class Asset {
         String hash;
+        long size = -1;
+
+        boolean matchesSize(long length) {
+            return size < 0 || size == length;
+        }
+
+        /**
+         * Objects are named by their hash, so the file is valid if it matches its name. Only hashed if the size matches.
+         */
+        boolean isValid(File file) throws IOException {
+            return file.exists() && matchesSize(file.length()) && DigestCache.hash(file, HashFunction.SHA1).equals(hash);
+        }
 
         public String getPath() {
             return hash.substring(0, 2) + '/' + hash;
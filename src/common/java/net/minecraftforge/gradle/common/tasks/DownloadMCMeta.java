@@ -5,10 +5,10 @@
 
 package net.minecraftforge.gradle.common.tasks;
 
+import net.minecraftforge.gradle.common.util.DownloadUtils;
 import net.minecraftforge.gradle.common.util.ManifestJson;
 
 import net.minecraftforge.gradle.common.util.MinecraftRepo;
-import org.apache.commons.io.FileUtils;
 import org.gradle.api.DefaultTask;
 import org.gradle.api.file.RegularFileProperty;
 import org.gradle.api.provider.Property;
@@ -20,8 +20,6 @@ import org.gradle.api.tasks.TaskAction;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.net.URL;
 
 public abstract class DownloadMCMeta extends DefaultTask {
@@ -36,13 +34,14 @@ public abstract class DownloadMCMeta extends DefaultTask {
 
     @TaskAction
     public void downloadMCMeta() throws IOException {
-        try (InputStream manin = new URL(MANIFEST_URL).openStream()) {
-            URL url = GSON.fromJson(new InputStreamReader(manin), ManifestJson.class).getUrl(getMCVersion().get());
-            if (url != null) {
-                FileUtils.copyURLToFile(url, getOutput().get().getAsFile());
-            } else {
-                throw new RuntimeException("Missing version from manifest: " + getMCVersion().get());
-            }
+        String manifest = DownloadUtils.downloadString(new URL(MANIFEST_URL));
+        if (manifest == null)
+            throw new IOException("Failed to download manifest: " + MANIFEST_URL);
+        URL url = GSON.fromJson(manifest, ManifestJson.class).getUrl(getMCVersion().get());
+        if (url != null) {
+            DownloadUtils.download(url, getOutput().get().getAsFile());
+        } else {
+            throw new RuntimeException("Missing version from manifest: " + getMCVersion().get());
         }
     }
 
@@ -0,0 +1,22 @@
+/*
+ * Copyright (c) Forge Development LLC and contributors
+ * SPDX-License-Identifier: LGPL-2.1-only
+ */
+
+package net.minecraftforge.gradle.common.tasks;
+
+import net.minecraftforge.gradle.common.util.DownloadUtils;
+
+import org.gradle.api.DefaultTask;
+import org.gradle.api.tasks.TaskAction;
+
+/**
+ * Prints how many requests {@link DownloadUtils} made, retried and gave up on, and how much it downloaded, since the
+ * Gradle daemon started.
+ */
+public abstract class DownloadReport extends DefaultTask {
+    @TaskAction
+    public void run() {
+        getLogger().lifecycle("Downloads: " + DownloadUtils.getStatistics());
+    }
+}
@@ -5,21 +5,40 @@
 
 package net.minecraftforge.gradle.common.tasks;
 
+import net.minecraftforge.gradle.common.util.HashStore;
 import net.minecraftforge.gradle.common.util.Utils;
 
+import org.apache.commons.io.FileUtils;
 import org.gradle.api.file.ConfigurableFileCollection;
 import org.gradle.api.file.RegularFileProperty;
 import org.gradle.api.plugins.JavaPluginExtension;
 import org.gradle.api.provider.Property;
 import org.gradle.api.tasks.Input;
 import org.gradle.api.tasks.InputFiles;
+import org.gradle.api.tasks.Internal;
 import org.gradle.api.tasks.OutputFile;
+import org.gradle.api.tasks.TaskAction;
 
 import com.google.common.collect.ImmutableMap;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 
+import javax.annotation.Nullable;
+
+/**
+ * Extracts a range map of every symbol reference in the sources using Srg2Source.
+ *
+ * <p>Unless {@linkplain #setIncremental(boolean) disabled}, the previous range map is passed to Srg2Source as a cache,
+ * and it only extracts the files whose content hash no longer matches their cached ranges. The cache is only used while
+ * the libraries, source compatibility and tool stay the same, as those change how every file resolves.</p>
+ */
 public abstract class ExtractRangeMap extends JarExec {
     private boolean batch = true;
+    private boolean incremental = true;
+    @Nullable
+    private File cache;
 
     public ExtractRangeMap() {
         getTool().set(Utils.SRG2SOURCE);
@@ -39,7 +58,7 @@ public abstract class ExtractRangeMap extends JarExec {
 
     @Override
     protected List<String> filterArgs(List<String> args) {
-        return replaceArgs(args, ImmutableMap.of(
+        List<String> ret = replaceArgs(args, ImmutableMap.of(
                 "{compat}", getSourceCompatibility().get(),
                 "{output}", getOutput().get().getAsFile(),
                 "{batched}", batch
@@ -48,6 +67,49 @@ public abstract class ExtractRangeMap extends JarExec {
                 "{library}", getDependencies().getFiles()
                 )
         );
+        if (cache != null) {
+            ret = new ArrayList<>(ret);
+            ret.add("--cache");
+            ret.add(cache.getAbsolutePath());
+        }
+        return ret;
+    }
+
+    @Override
+    @TaskAction
+    public void apply() throws IOException {
+        File output = getOutput().get().getAsFile();
+        File cacheFile = new File(getTemporaryDir(), "cache.txt");
+        HashStore settings = new HashStore(getProject())
+                .add("tool", getResolvedVersion())
+                .add("compat", getSourceCompatibility().get())
+                .add("batch", Boolean.toString(batch))
+                .add(getDependencies().getFiles())
+                .load(new File(getTemporaryDir(), "settings.sha1"));
+
+        cache = null;
+        if (incremental && settings.isSame() && output.exists()) {
+            // The tool overwrites the output, so it needs its own copy to read from
+            FileUtils.copyFile(output, cacheFile);
+            cache = cacheFile;
+        }
+
+        try {
+            super.apply();
+        } catch (RuntimeException e) {
+            if (cache == null)
+                throw e;
+            getLogger().warn("Srg2Source failed with the cached range map, extracting everything: {}", e.getMessage());
+            cache = null;
+            super.apply();
+        } finally {
+            cache = null;
+            if (cacheFile.exists() && !cacheFile.delete())
+                getLogger().warn("Could not delete range map cache: {}", cacheFile);
+        }
+
+        if (incremental)
+            settings.save();
     }
 
     @InputFiles
@@ -62,6 +124,18 @@ public abstract class ExtractRangeMap extends JarExec {
     @Input
     public abstract Property<String> getSourceCompatibility();
 
+    /**
+     * Only extract the files that changed since the last run, see the class docs.
+     */
+    @Internal
+    public boolean isIncremental() {
+        return incremental;
+    }
+
+    public void setIncremental(boolean incremental) {
+        this.incremental = incremental;
+    }
+
     @Input
     public boolean getBatch() {
         return this.batch;
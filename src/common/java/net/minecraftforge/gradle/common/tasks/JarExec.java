@@ -6,6 +6,7 @@
 package net.minecraftforge.gradle.common.tasks;
 
 import com.google.common.collect.ImmutableList;
+import net.minecraftforge.gradle.common.util.InProcessTools;
 import net.minecraftforge.gradle.common.util.MavenArtifactDownloader;
 
 import org.codehaus.groovy.control.io.NullWriter;
@@ -78,6 +79,7 @@ public abstract class JarExec extends DefaultTask {
         toolFile = getTool().map(toolStr -> MavenArtifactDownloader.gradle(getProject(), toolStr, false));
         resolvedVersion = getTool().map(toolStr -> MavenArtifactDownloader.getVersion(getProject(), toolStr));
         getDebug().convention(false);
+        getInProcess().convention(InProcessTools.isEnabled());
         getLogOutput().convention(this.workDir.map(d -> d.file("log.txt")));
 
         final JavaPluginExtension extension = getProject().getExtensions().findByType(JavaPluginExtension.class);
@@ -114,32 +116,45 @@ public abstract class JarExec extends DefaultTask {
         final File workingDirectory = workDir.get().getAsFile();
 
         try (PrintWriter log = new PrintWriter(hasLog ? new FileWriter(logFile) : NullWriter.DEFAULT, true)) {
-            getProject().javaexec(spec -> {
-                spec.setExecutable(getEffectiveExecutable());
-                spec.setDebug(debug);
-                spec.setArgs(args);
-                spec.setJvmArgs(jvmArgs);
-                spec.setClasspath(classpath);
-                spec.setWorkingDir(workingDirectory);
-                spec.getMainClass().set(mainClass);
-
-                log.println("Java Launcher: " + spec.getExecutable());
+            final OutputStream logStream = new OutputStream() {
+                @Override
+                public void flush() { log.flush(); }
+                @Override
+                public void close() {}
+                @Override
+                public void write(int b) { log.write(b); }
+            };
+
+            if (canRunInProcess(debug, jvmArgs, args, workingDirectory)) {
+                log.println("Java Launcher: In process (" + Jvm.current() + ")");
                 log.println("Arguments: " + args.stream().collect(Collectors.joining(", ", "'", "'")));
                 log.println("Classpath:");
                 classpath.forEach(f -> log.println(" - " + f.getAbsolutePath()));
-                log.println("Working directory: " + workingDirectory.getAbsolutePath());
                 log.println("Main class: " + mainClass);
                 log.println("====================================");
 
-                spec.setStandardOutput(new OutputStream() {
-                    @Override
-                    public void flush() { log.flush(); }
-                    @Override
-                    public void close() {}
-                    @Override
-                    public void write(int b) { log.write(b); }
-                });
-            }).rethrowFailure().assertNormalExitValue();
+                InProcessTools.run(classpath.getFiles(), mainClass, args, logStream);
+            } else {
+                getProject().javaexec(spec -> {
+                    spec.setExecutable(getEffectiveExecutable());
+                    spec.setDebug(debug);
+                    spec.setArgs(args);
+                    spec.setJvmArgs(jvmArgs);
+                    spec.setClasspath(classpath);
+                    spec.setWorkingDir(workingDirectory);
+                    spec.getMainClass().set(mainClass);
+
+                    log.println("Java Launcher: " + spec.getExecutable());
+                    log.println("Arguments: " + args.stream().collect(Collectors.joining(", ", "'", "'")));
+                    log.println("Classpath:");
+                    classpath.forEach(f -> log.println(" - " + f.getAbsolutePath()));
+                    log.println("Working directory: " + workingDirectory.getAbsolutePath());
+                    log.println("Main class: " + mainClass);
+                    log.println("====================================");
+
+                    spec.setStandardOutput(logStream);
+                }).rethrowFailure().assertNormalExitValue();
+            }
         }
 
         if (hasLog) {
@@ -153,6 +168,23 @@ public abstract class JarExec extends DefaultTask {
         }
     }
 
+    private boolean canRunInProcess(boolean debug, List<String> jvmArgs, List<String> args, File workingDirectory) {
+        if (debug || !getInProcess().get())
+            return false;
+        // The daemon can't change its working directory, so relative paths would resolve somewhere else
+        if (args.stream().anyMatch(arg -> isRelativePath(arg, workingDirectory)))
+            return false;
+        JavaLanguageVersion version = getJavaLauncher().isPresent() ? getJavaLauncher().get().getMetadata().getLanguageVersion() : null;
+        return InProcessTools.canRun(version, jvmArgs);
+    }
+
+    private static boolean isRelativePath(String arg, File workingDirectory) {
+        String value = arg.startsWith("-") && arg.indexOf('=') != -1 ? arg.substring(arg.indexOf('=') + 1) : arg;
+        if (value.isEmpty() || value.startsWith("-") || new File(value).isAbsolute())
+            return false;
+        return value.indexOf('/') != -1 || value.indexOf('\\') != -1 || new File(workingDirectory, value).exists();
+    }
+
     protected List<String> filterArgs(List<String> args) {
         return args;
     }
@@ -247,6 +279,13 @@ public abstract class JarExec extends DefaultTask {
     @Optional
     public abstract Property<Boolean> getDebug();
 
+    /**
+     * Runs the tool inside the Gradle daemon instead of forking a new JVM, when the requested toolchain and JVM
+     * arguments allow it. Defaults to the {@value InProcessTools#ENABLE_PROPERTY} system property.
+     */
+    @Internal
+    public abstract Property<Boolean> getInProcess();
+
     @Optional
     @InputFiles
     @Classpath
@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) Forge Development LLC and contributors
+ * SPDX-License-Identifier: LGPL-2.1-only
+ */
+
+package net.minecraftforge.gradle.common.tasks;
+
+import net.minecraftforge.gradle.common.util.Utils;
+
+import org.gradle.api.DefaultTask;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.TaskAction;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Deletes asset objects that are not referenced by any of the asset indexes next to them.
+ *
+ * <p>Prunes the {@linkplain DownloadAssets#getObjectStore() shared object store} if one is configured, otherwise the
+ * assets in the ForgeGradle cache. Hard links to pruned objects elsewhere keep working, as they don't depend on the
+ * store's copy.</p>
+ */
+public abstract class PruneAssets extends DefaultTask {
+    // Objects are written before anything references them in a concurrent build, so leave recent files alone
+    private static final long GRACE_PERIOD = TimeUnit.HOURS.toMillis(1);
+
+    public PruneAssets() {
+        getObjectStore().convention(getProject().getProviders().gradleProperty(DownloadAssets.OBJECT_STORE_PROP)
+                .map(path -> getProject().getLayout().getProjectDirectory().dir(path)));
+    }
+
+    @TaskAction
+    public void run() throws IOException {
+        File root = getObjectStore().isPresent() ? getObjectStore().get().getAsFile() : Utils.getCache(getProject(), "assets");
+        File[] indexes = new File(root, "indexes").listFiles((dir, name) -> name.endsWith(".json"));
+        if (indexes == null || indexes.length == 0) {
+            getLogger().lifecycle("No asset indexes found in " + root + ", nothing to prune");
+            return;
+        }
+
+        Set<String> referenced = new HashSet<>();
+        for (File index : indexes) {
+            DownloadAssets.AssetIndex json;
+            try {
+                json = Utils.loadJson(index, DownloadAssets.AssetIndex.class);
+            } catch (IOException | RuntimeException e) {
+                // Without knowing what it references, anything could be in use
+                throw new IOException("Could not read asset index " + index + ", refusing to prune", e);
+            }
+            if (json.objects != null)
+                json.objects.values().forEach(asset -> referenced.add(asset.hash));
+        }
+
+        File[] buckets = new File(root, "objects").listFiles(File::isDirectory);
+        if (buckets == null)
+            return;
+
+        long cutoff = System.currentTimeMillis() - GRACE_PERIOD;
+        int pruned = 0;
+        int kept = 0;
+        long bytes = 0;
+        for (File bucket : buckets) {
+            File[] objects = bucket.listFiles(File::isFile);
+            if (objects == null)
+                continue;
+            for (File object : objects) {
+                if (referenced.contains(object.getName()) || object.lastModified() > cutoff) {
+                    kept++;
+                    continue;
+                }
+                long length = object.length();
+                if (object.delete()) {
+                    pruned++;
+                    bytes += length;
+                } else {
+                    getLogger().warn("Could not delete unreferenced asset object " + object);
+                }
+            }
+            String[] remaining = bucket.list();
+            if (remaining != null && remaining.length == 0)
+                bucket.delete();
+        }
+
+        getLogger().lifecycle(String.format(Locale.ROOT, "Pruned %d asset objects (%.1f MB) from %s, %d kept, referenced by %d indexes",
+                pruned, bytes / (1024D * 1024D), root, kept, indexes.length));
+    }
+
+    /**
+     * The shared object store to prune, see {@link DownloadAssets#getObjectStore()}.
+     */
+    @Internal
+    public abstract DirectoryProperty getObjectStore();
+}
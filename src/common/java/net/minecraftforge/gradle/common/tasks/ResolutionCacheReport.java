@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) Forge Development LLC and contributors
+ * SPDX-License-Identifier: LGPL-2.1-only
+ */
+
+package net.minecraftforge.gradle.common.tasks;
+
+import net.minecraftforge.gradle.common.util.ResolutionCache;
+
+import org.gradle.api.DefaultTask;
+import org.gradle.api.tasks.TaskAction;
+
+import java.nio.file.Path;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Prints what the {@linkplain ResolutionCache resolution cache} remembers, and how often it was used since the Gradle
+ * daemon started.
+ */
+public abstract class ResolutionCacheReport extends DefaultTask {
+    @TaskAction
+    public void run() {
+        Path journal = ResolutionCache.getJournal();
+        if (journal == null) {
+            getLogger().lifecycle("The resolution cache is disabled");
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        Map<ResolutionCache.Kind, int[]> counts = new EnumMap<>(ResolutionCache.Kind.class); // Live, expired
+        Map<String, Integer> missing = new TreeMap<>();
+        for (ResolutionCache.Entry entry : ResolutionCache.getEntries()) {
+            int[] count = counts.computeIfAbsent(entry.getKind(), k -> new int[2]);
+            count[entry.isExpired(now) ? 1 : 0]++;
+            if (entry.getKind() == ResolutionCache.Kind.MISSING && !entry.isExpired(now))
+                missing.merge(entry.getSubject(), 1, Integer::sum);
+        }
+
+        getLogger().lifecycle("Resolution cache: " + journal);
+        for (ResolutionCache.Kind kind : ResolutionCache.Kind.values()) {
+            int[] count = counts.getOrDefault(kind, new int[2]);
+            ResolutionCache.Stats stats = ResolutionCache.getStatistics().get(kind);
+            long lookups = stats.getLookups();
+            getLogger().lifecycle(String.format(Locale.ROOT, "  %-8s %6d entries (%d expired), %d of %d lookups hit (%.1f%%) since the daemon started",
+                    kind.name().toLowerCase(Locale.ROOT), count[0], count[1], stats.getHits(), lookups,
+                    lookups == 0 ? 0D : stats.getHits() * 100D / lookups));
+        }
+
+        if (!missing.isEmpty()) {
+            getLogger().lifecycle("Files known to be missing, by repository:");
+            missing.forEach((repo, count) -> getLogger().lifecycle(String.format(Locale.ROOT, "  %6d %s", count, repo)));
+        }
+    }
+}
@@ -130,6 +130,7 @@ public abstract class BaseRepo implements ArtifactProvider<ArtifactIdentifier> {
             );
             adapter.content(content -> repos.stream().filter(repo -> repo instanceof BaseRepo)
                     .forEach(repo -> ((BaseRepo) repo).configureFilter(content)));
+            MavenArtifactDownloader.hideFromGradle(adapter);
             return adapter;
         }
     }
@@ -0,0 +1,244 @@
+/*
+ * Copyright (c) Forge Development LLC and contributors
+ * SPDX-License-Identifier: LGPL-2.1-only
+ */
+
+package net.minecraftforge.gradle.common.util;
+
+import org.gradle.api.Project;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import javax.annotation.Nullable;
+
+/**
+ * Remembers the digests of files, so that unchanged files don't have to be read and hashed again.
+ * <p>
+ * Entries are keyed by canonical path and hash function, and are only valid while the file's length, last modified time
+ * and file key are the same as when it was hashed. Files modified within the last few seconds are never remembered, as
+ * a second write inside the same timestamp tick would go unnoticed.
+ * <p>
+ * Once {@link #init(Project)} is called the entries are persisted in an append only journal in the ForgeGradle cache,
+ * so they survive across daemons. Without it, entries only live as long as this class. At most
+ * {@code net.minecraftforge.gradle.digest_cache.max_entries} entries are kept in memory, and entries for deleted files
+ * are dropped whenever the journal is compacted.
+ */
+public class DigestCache {
+    private static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("net.minecraftforge.gradle.digest_cache", "true"));
+    private static final long RACY_WINDOW = 3000; // Larger than the 2 second timestamp resolution of FAT
+    private static final String JOURNAL_NAME = "digests.journal";
+    private static final int MAX_ENTRIES = Integer.getInteger("net.minecraftforge.gradle.digest_cache.max_entries", 200_000);
+
+    private static final Map<String, Entry> ENTRIES = new ConcurrentHashMap<>();
+    @Nullable
+    private static volatile Journal journal;
+
+    /**
+     * Loads, and starts persisting to, the journal in the ForgeGradle cache of this project.
+     */
+    public static synchronized void init(Project project) {
+        if (!ENABLED)
+            return;
+
+        Path target = Utils.getCacheBase(project).resolve(JOURNAL_NAME);
+        Journal old = journal;
+        if (old != null && target.equals(old.getPath()))
+            return;
+
+        journal = null;
+        if (old != null) {
+            try {
+                old.close();
+            } catch (IOException e) {
+                // Nothing we can do, it isn't used anymore either way
+            }
+        }
+
+        Journal next;
+        List<String> lines;
+        try {
+            next = new Journal(target);
+            lines = next.read();
+        } catch (IOException e) {
+            project.getLogger().debug("Failed to read digest journal " + target, e);
+            return;
+        }
+
+        for (String line : lines) {
+            Entry entry = Entry.parse(line);
+            if (entry != null)
+                ENTRIES.put(entry.key, entry);
+        }
+        trim();
+        journal = next;
+
+        // Stale entries are superseded rather than removed, so compact once most of the journal is dead weight
+        if (lines.size() > 1000 && lines.size() > ENTRIES.size() * 2)
+            compact(next);
+    }
+
+    /**
+     * Returns the digest of the file, hashing it only if it changed since it was last hashed.
+     */
+    public static String hash(File file, HashFunction function) throws IOException {
+        return hashAll(file, function).get(function);
+    }
+
+    /**
+     * Returns the digests of the file, computing all the ones that aren't remembered in a single read of the file.
+     */
+    public static Map<HashFunction, String> hashAll(File file, HashFunction... functions) throws IOException {
+        Path path = file.toPath();
+        if (!ENABLED)
+            return HashFunction.hashAll(path, functions);
+
+        BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+        String canonical = file.getCanonicalPath();
+        long length = attrs.size();
+        long modified = attrs.lastModifiedTime().toMillis();
+        String fileKey = String.valueOf(attrs.fileKey());
+
+        Map<HashFunction, String> ret = new EnumMap<>(HashFunction.class);
+        List<HashFunction> missing = new ArrayList<>();
+        for (HashFunction function : functions) {
+            Entry entry = ENTRIES.get(function.name() + ':' + canonical);
+            if (entry != null && entry.length == length && entry.modified == modified && entry.fileKey.equals(fileKey))
+                ret.put(function, entry.digest);
+            else
+                missing.add(function);
+        }
+
+        if (missing.isEmpty())
+            return ret;
+
+        Map<HashFunction, String> computed = HashFunction.hashAll(path, missing.toArray(new HashFunction[0]));
+        ret.putAll(computed);
+        if (modified < System.currentTimeMillis() - RACY_WINDOW) {
+            computed.forEach((function, digest) -> {
+                Entry entry = new Entry(function.name() + ':' + canonical, length, modified, fileKey, digest);
+                ENTRIES.put(entry.key, entry);
+                append(entry);
+            });
+        }
+        return ret;
+    }
+
+    /**
+     * Remembers digests computed while the file was written, such as by a download, so it doesn't have to be read
+     * again. Only for files nothing else writes to: unlike {@link #hashAll(File, HashFunction...)}, the digests are
+     * remembered even though the file was just modified.
+     */
+    public static void put(File file, Map<HashFunction, String> digests) throws IOException {
+        if (!ENABLED)
+            return;
+
+        BasicFileAttributes attrs = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+        String canonical = file.getCanonicalPath();
+        String fileKey = String.valueOf(attrs.fileKey());
+        digests.forEach((function, digest) -> {
+            Entry entry = new Entry(function.name() + ':' + canonical, attrs.size(), attrs.lastModifiedTime().toMillis(), fileKey, digest);
+            ENTRIES.put(entry.key, entry);
+            append(entry);
+        });
+    }
+
+    private static void append(Entry entry) {
+        if (ENTRIES.size() > MAX_ENTRIES)
+            trim();
+
+        Journal target = journal;
+        if (target == null)
+            return;
+
+        try {
+            target.append(entry.serialize());
+        } catch (IOException e) {
+            // The journal is only an optimization, keep the entry in memory
+        }
+    }
+
+    /*
+     * Forgets arbitrary entries once there are too many, the journal still has them for the next daemon.
+     */
+    private static void trim() {
+        int excess = ENTRIES.size() - MAX_ENTRIES * 3 / 4;
+        if (excess <= 0 || ENTRIES.size() <= MAX_ENTRIES)
+            return;
+        Iterator<String> keys = ENTRIES.keySet().iterator();
+        while (excess-- > 0 && keys.hasNext()) {
+            keys.next();
+            keys.remove();
+        }
+    }
+
+    /*
+     * Keeps the latest entry for every file that still exists, including the ones other daemons appended since this one
+     * read the journal.
+     */
+    private static void compact(Journal target) {
+        try {
+            target.compact(lines -> {
+                Map<String, Entry> latest = new LinkedHashMap<>();
+                for (String line : lines) {
+                    Entry entry = Entry.parse(line);
+                    if (entry != null)
+                        latest.put(entry.key, entry);
+                }
+                return latest.values().stream()
+                        .filter(entry -> new File(entry.getPath()).exists())
+                        .map(Entry::serialize)
+                        .collect(Collectors.toList());
+            });
+        } catch (IOException e) {
+            // Try again next time
+        }
+    }
+
+    private static class Entry {
+        private final String key;
+        private final long length;
+        private final long modified;
+        private final String fileKey;
+        private final String digest;
+
+        private Entry(String key, long length, long modified, String fileKey, String digest) {
+            this.key = key;
+            this.length = length;
+            this.modified = modified;
+            this.fileKey = fileKey;
+            this.digest = digest;
+        }
+
+        private String getPath() {
+            return key.substring(key.indexOf(':') + 1);
+        }
+
+        private String serialize() {
+            return digest + '\t' + length + '\t' + modified + '\t' + fileKey + '\t' + key;
+        }
+
+        @Nullable
+        private static Entry parse(String line) {
+            String[] pts = line.split("\t", 5);
+            if (pts.length != 5)
+                return null;
+            try {
+                return new Entry(pts[4], Long.parseLong(pts[1]), Long.parseLong(pts[2]), pts[3], pts[0]);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+    }
+}
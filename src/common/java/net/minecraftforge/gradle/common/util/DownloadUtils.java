@@ -8,6 +8,10 @@ package net.minecraftforge.gradle.common.util;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.net.MediaType;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.CountingInputStream;
+import org.apache.commons.io.output.NullOutputStream;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
 
 import javax.annotation.Nullable;
 import java.io.ByteArrayOutputStream;
@@ -16,14 +20,37 @@ import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.math.BigInteger;
 import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.ProtocolException;
 import java.net.URL;
 import java.net.URLConnection;
+import java.net.UnknownHostException;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Collection;
 import java.util.Date;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.InflaterInputStream;
@@ -35,6 +62,17 @@ public class DownloadUtils {
             "deflate", InflaterInputStream::new
     );
     private static final String ACCEPT_ENCODING = String.join(", ", DECOMPRESSION_STRATEGIES.keySet());
+    private static final Logger LOGGER = Logging.getLogger(DownloadUtils.class);
+
+    // Timeouts in seconds, the JDK defaults wait forever on a stalled connection
+    private static final int CONNECT_TIMEOUT = Integer.getInteger("net.minecraftforge.gradle.download.connect_timeout", 30);
+    private static final int READ_TIMEOUT = Integer.getInteger("net.minecraftforge.gradle.download.read_timeout", 60);
+    private static final int MAX_RETRIES = Integer.getInteger("net.minecraftforge.gradle.download.retries", 3);
+    private static final long RETRY_DELAY = 500; // Milliseconds, doubled after every attempt
+    private static final long MAX_RETRY_DELAY = 10_000;
+    private static final int HOST_LIMIT = Integer.getInteger("net.minecraftforge.gradle.download.host_limit", 8);
+    private static final Map<String, Semaphore> HOST_PERMITS = new ConcurrentHashMap<>();
+    private static final Stats STATS = new Stats();
 
     private DownloadUtils() {} // Prevent instantiation
 
@@ -45,38 +83,26 @@ public class DownloadUtils {
         if (output.exists() && offline) {
             return true; //Use offline
         }
+        CacheMeta meta = output.exists() ? CacheMeta.load(url, output) : null;
         File efile = new File(output.getAbsolutePath() + ".etag");
-        String etag = "";
-        if (efile.exists())
-            etag = new String(Files.readAllBytes(efile.toPath()), StandardCharsets.UTF_8);
-
-        final String initialEtagValue = etag;
-        HttpURLConnection con = connectHttpWithRedirects(url, (setupCon) -> {
-            if (output.exists())
-                setupCon.setIfModifiedSince(output.lastModified());
-            if (!initialEtagValue.isEmpty())
-                setupCon.setRequestProperty("If-None-Match", initialEtagValue);
-        });
-
-        if (con.getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
-            output.setLastModified(new Date().getTime());
-            return true;
-        } else if (con.getResponseCode() == HttpURLConnection.HTTP_OK) {
-            try {
-                downloadFileConsideringCompression(con, output);
+        if (meta == null && output.exists()) {
+            // Files downloaded before the cache metadata existed, the file's time is when it was last checked
+            meta = new CacheMeta();
+            meta.etag = efile.exists() ? new String(Files.readAllBytes(efile.toPath()), StandardCharsets.UTF_8) : null;
+            meta.lastModified = DateTimeFormatter.RFC_1123_DATE_TIME.format(Instant.ofEpochMilli(output.lastModified()).atZone(ZoneOffset.UTC));
+        }
 
-                etag = con.getHeaderField("ETag");
-                if (etag == null || etag.isEmpty())
-                    Files.write(efile.toPath(), new byte[0]);
-                else
-                    Files.write(efile.toPath(), etag.getBytes(StandardCharsets.UTF_8));
+        switch (revalidate(url, output, null, meta)) {
+            case NOT_MODIFIED:
+                output.setLastModified(new Date().getTime());
                 return true;
-            } catch (IOException e) {
-                output.delete();
-                throw e;
-            }
+            case DOWNLOADED:
+                if (efile.exists())
+                    efile.delete(); // Replaced by the cache metadata
+                return true;
+            default:
+                return false;
         }
-        return false;
     }
 
     public static boolean downloadFile(URL url, File output, boolean deleteOn404) {
@@ -84,28 +110,9 @@ public class DownloadUtils {
     }
 
     public static boolean downloadFile(URL url, File output, @Nullable Map<String, String> headers, boolean deleteOn404) {
-        String proto = url.getProtocol().toLowerCase();
-
         try {
-            if ("http".equals(proto) || "https".equals(proto)) {
-                HttpURLConnection con = connectHttpWithRedirects(url, urlCon -> {
-                    if (headers != null) {
-                        for (Map.Entry<String, String> entry : headers.entrySet()) {
-                            urlCon.setRequestProperty(entry.getKey(), entry.getValue());
-                        }
-                    }
-                });
-                int responseCode = con.getResponseCode();
-                if (responseCode == HttpURLConnection.HTTP_OK) {
-                    return downloadFile(con, output);
-                } else if (responseCode == HttpURLConnection.HTTP_NOT_FOUND && deleteOn404 && output.exists()) {
-                    output.delete();
-                }
-            } else {
-                URLConnection con = url.openConnection();
-                con.connect();
-                return downloadFile(con, output);
-            }
+            download(url, output, headers);
+            return true;
         } catch (FileNotFoundException e) {
             if (deleteOn404 && output.exists())
                 output.delete();
@@ -120,32 +127,198 @@ public class DownloadUtils {
         return false;
     }
 
-    private static boolean downloadFile(URLConnection con, File output) throws IOException {
+    /**
+     * Downloads the file, replacing the output once it is complete, so an interrupted download never leaves a partial
+     * file behind. Connection failures, timeouts and server errors are retried a few times with an increasing delay.
+     *
+     * @throws FileNotFoundException If the server doesn't have the file
+     * @throws IOException           If the file could not be downloaded
+     */
+    public static void download(URL url, File output) throws IOException {
+        download(url, output, null);
+    }
+
+    /**
+     * @see #download(URL, File)
+     */
+    public static void download(URL url, File output, @Nullable Map<String, String> headers) throws IOException {
+        download(url, output, headers, null, null);
+    }
+
+    /**
+     * Downloads the file like {@link #download(URL, File)}, hashing it on the way. If the digest doesn't match the
+     * expected one, the download is retried and the output is left as it was.
+     *
+     * @param expected The expected digest, or null to accept any file
+     */
+    public static void download(URL url, File output, HashFunction function, @Nullable String expected) throws IOException {
+        download(url, output, null, function, expected);
+    }
+
+    private static void download(URL url, File output, @Nullable Map<String, String> headers, @Nullable HashFunction function, @Nullable String expected) throws IOException {
+        request(url, headers == null ? c -> {} : c -> headers.forEach(c::setRequestProperty), con -> {
+            if (con instanceof HttpURLConnection)
+                checkStatus((HttpURLConnection)con);
+            transfer(con, output, function, expected);
+            return null;
+        });
+    }
+
+    /**
+     * Downloads the URL like {@link #download(URL, File)}, but lets the caller handle the successful response, for
+     * example to resume a partial file or to verify it some other way. The handler is called again for every retry,
+     * any {@link IOException} it throws other than a {@link FileNotFoundException} is retried.
+     *
+     * @param setup Called before connecting, after the default timeouts are set
+     * @throws FileNotFoundException If the server doesn't have the file
+     */
+    public static void download(URL url, Consumer<HttpURLConnection> setup, ResponseHandler handler) throws IOException {
+        request(url, setup, con -> {
+            HttpURLConnection http = (HttpURLConnection)con;
+            checkStatus(http);
+            CountingInputStream in = new CountingInputStream(http.getInputStream());
+            try (InputStream body = in) {
+                handler.handle(http, body);
+            } finally {
+                STATS.bytes.addAndGet(in.getByteCount());
+            }
+            return null;
+        });
+    }
+
+    /*
+     * A single request, with retries. The host's permit is taken before connecting and held until the handler is done
+     * with the body, so parallel tasks don't open more connections to one server than it is likely to serve.
+     */
+    private static <T> T request(URL url, Consumer<? super HttpURLConnection> setup, Handler<T> handler) throws IOException {
+        Semaphore permits = HOST_PERMITS.computeIfAbsent(url.getHost(), k -> new Semaphore(HOST_LIMIT));
+        return withRetries(url, last -> {
+            permits.acquireUninterruptibly();
+            long start = System.nanoTime();
+            try {
+                URLConnection con = connect(url, setup, !last);
+                return handler.run(con);
+            } finally {
+                STATS.time.addAndGet(System.nanoTime() - start);
+                permits.release();
+            }
+        });
+    }
+
+    /*
+     * Anything but a success is thrown, after reading the error body so the connection can be kept alive.
+     */
+    private static void checkStatus(HttpURLConnection con) throws IOException {
+        int code = con.getResponseCode();
+        if (code >= 200 && code < 300)
+            return;
+        drain(con);
+        if (code == HttpURLConnection.HTTP_NOT_FOUND || code == HttpURLConnection.HTTP_GONE)
+            throw new FileNotFoundException("Server returned HTTP " + code + " for " + con.getURL());
+        throw new HttpStatusException(con.getURL(), code);
+    }
+
+    /*
+     * Reads and closes whatever body a response has that won't be used, so the connection can go back to the pool.
+     * Disconnecting would close the socket instead.
+     */
+    private static void drain(HttpURLConnection con) {
         try {
-            downloadFileConsideringCompression(con, output);
-            return true;
+            InputStream body = con.getResponseCode() >= 400 ? con.getErrorStream() : con.getInputStream();
+            if (body != null) {
+                try (InputStream in = body) {
+                    IOUtils.copy(in, NullOutputStream.NULL_OUTPUT_STREAM);
+                }
+            }
         } catch (IOException e) {
-            if (output.exists())
-                output.delete();
-            throw e;
+            // Only means the connection won't be reused
         }
     }
 
-    @Nullable
-    public static String downloadString(URL url) throws IOException {
-        String proto = url.getProtocol().toLowerCase();
+    /*
+     * Downloads the body to a temporary file next to the output, then moves it into place.
+     *
+     * The MD5 and SHA1, which the sidecar files and caches use, are computed as the body is written and given to the
+     * DigestCache, so nothing has to read the file again.
+     */
+    private static void transfer(URLConnection con, File output, @Nullable HashFunction function, @Nullable String expected) throws IOException {
+        File parent = output.getAbsoluteFile().getParentFile();
+        if (!parent.exists() && !parent.mkdirs() && !parent.exists())
+            throw new IOException("Could not create directory: " + parent);
+
+        Set<HashFunction> functions = EnumSet.of(HashFunction.MD5, HashFunction.SHA1);
+        if (function != null)
+            functions.add(function);
+        Map<HashFunction, MessageDigest> digests = new EnumMap<>(HashFunction.class);
+        functions.forEach(f -> digests.put(f, f.get()));
+
+        File temp = File.createTempFile(output.getName(), ".download", parent);
+        try {
+            STATS.bytes.addAndGet(downloadFileConsideringCompression(con, temp, digests.values()));
 
-        if ("http".equals(proto) || "https".equals(proto)) {
-            HttpURLConnection con = connectHttpWithRedirects(url);
-            if (con.getResponseCode() == HttpURLConnection.HTTP_OK) {
-                return downloadString(con);
+            Map<HashFunction, String> hashes = new EnumMap<>(HashFunction.class);
+            digests.forEach((f, digest) -> hashes.put(f, f.pad(new BigInteger(1, digest.digest()).toString(16))));
+            if (function != null && expected != null && !expected.equalsIgnoreCase(hashes.get(function)))
+                throw new IOException("Hash failed for " + con.getURL() + ", expected " + expected + " got " + hashes.get(function));
+            try {
+                Files.move(temp.toPath(), output.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp.toPath(), output.toPath(), StandardCopyOption.REPLACE_EXISTING);
             }
-        } else {
-            URLConnection con = url.openConnection();
-            con.connect();
-            return downloadString(con);
+            DigestCache.put(output, hashes);
+        } finally {
+            if (temp.exists())
+                temp.delete();
         }
-        return null;
+    }
+
+    private static <T> T withRetries(URL url, Attempt<T> attempt) throws IOException {
+        for (int x = 0; ; x++) {
+            try {
+                return attempt.run(x >= MAX_RETRIES);
+            } catch (IOException e) {
+                if (x >= MAX_RETRIES || !isRetryable(e)) {
+                    STATS.failures.incrementAndGet();
+                    throw e;
+                }
+                retryDelay(url, x, e.toString());
+            }
+        }
+    }
+
+    private static boolean isRetryable(IOException e) {
+        // Missing files, unknown hosts and broken URLs won't fix themselves
+        if (e instanceof FileNotFoundException || e instanceof UnknownHostException || e instanceof MalformedURLException)
+            return false;
+        return !(e instanceof HttpStatusException) || isRetryable(((HttpStatusException)e).code);
+    }
+
+    private static boolean isRetryable(int code) {
+        return code == 429 || code == HttpURLConnection.HTTP_INTERNAL_ERROR || code == HttpURLConnection.HTTP_BAD_GATEWAY ||
+                code == HttpURLConnection.HTTP_UNAVAILABLE || code == HttpURLConnection.HTTP_GATEWAY_TIMEOUT;
+    }
+
+    private static void retryDelay(URL url, int attempt, String reason) throws IOException {
+        long delay = Math.min(MAX_RETRY_DELAY, RETRY_DELAY << attempt);
+        // Jitter, so threads that failed together don't all retry together
+        delay += ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+        STATS.retries.incrementAndGet();
+        LOGGER.warn("Retrying download of {} in {}ms ({} of {}): {}", url, delay, attempt + 1, MAX_RETRIES, reason);
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting to retry " + url);
+        }
+    }
+
+    @Nullable
+    public static String downloadString(URL url) throws IOException {
+        return request(url, c -> {}, con -> {
+            if (con instanceof HttpURLConnection && ((HttpURLConnection)con).getResponseCode() != HttpURLConnection.HTTP_OK)
+                return null;
+            return downloadString(con);
+        });
     }
 
     private static String downloadString(URLConnection con) throws IOException {
@@ -153,6 +326,7 @@ public class DownloadUtils {
         final InputStream is = getInputStream(con);
         final ByteArrayOutputStream out = new ByteArrayOutputStream();
         final int read = IOUtils.copy(is, out);
+        STATS.bytes.addAndGet(read);
         if (isEncoded(con) && len != -1 && read != len) {
             throw new IOException("Failed to read all data from " + con.getURL() + "; got " + read + " expected " + len);
         }
@@ -171,16 +345,60 @@ public class DownloadUtils {
         return downloadWithCache(url, target, null, changing, bypassLocal);
     }
 
+    /**
+     * Returns the target if it was downloaded by {@link #downloadWithCache(URL, File, Map, boolean, boolean)} and still
+     * matches the MD5 saved next to it, or null if it has to be downloaded again.
+     */
+    @Nullable
+    public static File getCached(File target) throws IOException {
+        File md5_file = new File(target.getAbsolutePath() + ".md5");
+        if (!md5_file.exists() || !target.exists())
+            return null;
+        String expected = new String(Files.readAllBytes(md5_file.toPath()), StandardCharsets.UTF_8);
+        return expected.equals(DigestCache.hash(target, HashFunction.MD5)) ? target : null;
+    }
+
+    /**
+     * Downloads the file to the target, unless the target is already up to date.
+     * <p>
+     * Unless the file is changing, a target whose MD5 matches the one saved next to it is used without asking the
+     * server. Otherwise, if the server gave an ETag or Last-Modified date for the target when it was downloaded, a
+     * single conditional request checks if it is still the same. Without those, the server's {@code .md5} checksum is
+     * compared to the target's. Digests come from the {@link DigestCache}, so an unchanged target isn't hashed again.
+     */
     @Nullable
     public static File downloadWithCache(URL url, File target, @Nullable Map<String, String> headers, boolean changing, boolean bypassLocal) throws IOException {
         File md5_file = new File(target.getAbsolutePath() + ".md5");
-        String actual = target.exists() ? HashFunction.MD5.hash(target) : null;
+        String actual = target.exists() ? DigestCache.hash(target, HashFunction.MD5) : null;
 
         if (md5_file.exists() && target.exists() && !(changing || bypassLocal)) {
             String expected = new String(Files.readAllBytes(md5_file.toPath()), StandardCharsets.UTF_8);
             if (expected.equals(actual)) return target; // Skip all downloads if the local MD5 matches the local file.
         }
 
+        CacheMeta meta = actual != null && isHttp(url) ? CacheMeta.load(url, target) : null;
+        if (meta != null && meta.md5 != null && meta.md5.equals(actual) && meta.hasValidators()) {
+            try {
+                switch (revalidate(url, target, headers, meta)) {
+                    case NOT_MODIFIED:
+                        if (!md5_file.exists())
+                            Utils.updateHash(target, HashFunction.MD5);
+                        return target;
+                    case DOWNLOADED:
+                        Utils.updateHash(target, HashFunction.MD5);
+                        return target;
+                    case MISSING:
+                        CacheMeta.delete(target);
+                        target.delete();
+                        return null;
+                    default:
+                        break; // Check the checksum instead
+                }
+            } catch (IOException e) {
+                // Check the checksum instead
+            }
+        }
+
         String expected = null;
         try {
             expected = downloadString(new URL(url + ".md5"));
@@ -191,14 +409,27 @@ public class DownloadUtils {
         if (expected != null && expected.equals(actual)) {
             // Require MD5 checksum to skip the download as it will be calculated after every successful download.
             Files.write(md5_file.toPath(), expected.getBytes(StandardCharsets.UTF_8));
+            if (meta == null && isHttp(url))
+                saveValidators(url, target, headers); // So next time a conditional request can be used instead
             return target;
         }
 
         if (target.exists())
             target.delete(); //Invalid checksum, delete and grab new
 
-        if (!downloadFile(url, target, headers, false)) {
+        boolean downloaded;
+        if (isHttp(url)) {
+            try {
+                downloaded = revalidate(url, target, headers, null) == Revalidation.DOWNLOADED;
+            } catch (IOException e) {
+                downloaded = false;
+            }
+        } else {
+            downloaded = downloadFile(url, target, headers, false);
+        }
+        if (!downloaded) {
             target.delete();
+            CacheMeta.delete(target);
             return null;
         }
 
@@ -206,18 +437,165 @@ public class DownloadUtils {
         return target;
     }
 
+    private static boolean isHttp(URL url) {
+        String proto = url.getProtocol().toLowerCase(Locale.ROOT);
+        return "http".equals(proto) || "https".equals(proto);
+    }
+
+    private enum Revalidation {
+        NOT_MODIFIED, DOWNLOADED, MISSING, FAILED
+    }
+
+    /*
+     * Sends a single request for the file, conditional on the validators in the metadata if there is any. A new file
+     * is downloaded next to the output and only replaces it once complete, along with its new metadata.
+     */
+    private static Revalidation revalidate(URL url, File output, @Nullable Map<String, String> headers, @Nullable CacheMeta meta) throws IOException {
+        return request(url, setup -> {
+            if (headers != null)
+                headers.forEach(setup::setRequestProperty);
+            if (meta != null && meta.etag != null && !meta.etag.isEmpty())
+                setup.setRequestProperty("If-None-Match", meta.etag);
+            if (meta != null && meta.lastModified != null)
+                setup.setRequestProperty("If-Modified-Since", meta.lastModified);
+        }, raw -> {
+            HttpURLConnection con = (HttpURLConnection)raw;
+            int code = con.getResponseCode();
+            if (code != HttpURLConnection.HTTP_OK) {
+                drain(con);
+                if (code == HttpURLConnection.HTTP_NOT_MODIFIED)
+                    return Revalidation.NOT_MODIFIED;
+                if (code == HttpURLConnection.HTTP_NOT_FOUND || code == HttpURLConnection.HTTP_GONE)
+                    return Revalidation.MISSING;
+                return Revalidation.FAILED;
+            }
+
+            transfer(con, output, null, null);
+            CacheMeta.save(url, output, con);
+            return Revalidation.DOWNLOADED;
+        });
+    }
+
+    private static void saveValidators(URL url, File output, @Nullable Map<String, String> headers) {
+        try {
+            HttpURLConnection con = connectHttpWithRedirects(url, setup -> {
+                try {
+                    setup.setRequestMethod("HEAD");
+                } catch (ProtocolException e) {
+                    throw new UncheckedIOException(e);
+                }
+                if (headers != null)
+                    headers.forEach(setup::setRequestProperty);
+            });
+            if (con.getResponseCode() == HttpURLConnection.HTTP_OK && con.getContentLengthLong() == output.length())
+                CacheMeta.save(url, output, con);
+            drain(con);
+        } catch (IOException | UncheckedIOException e) {
+            // Only an optimization for next time
+        }
+    }
+
+    /**
+     * What the server said about a downloaded file, stored next to it as {@code <file>.cache}. Only valid for the same
+     * URL and while the file has the same length and MD5 as when it was downloaded.
+     */
+    private static class CacheMeta {
+        String url;
+        @Nullable
+        String etag;
+        @Nullable
+        String lastModified;
+        long length;
+        @Nullable
+        String md5;
+        @Nullable
+        String sha1;
+
+        private boolean hasValidators() {
+            return (etag != null && !etag.isEmpty()) || lastModified != null;
+        }
+
+        private static File getFile(File output) {
+            return new File(output.getAbsolutePath() + ".cache");
+        }
+
+        @Nullable
+        private static CacheMeta load(URL url, File output) {
+            File file = getFile(output);
+            if (!file.exists())
+                return null;
+            try {
+                CacheMeta meta = Utils.loadJson(file, CacheMeta.class);
+                if (meta == null || !url.toString().equals(meta.url) || meta.length != output.length())
+                    return null;
+                return meta;
+            } catch (IOException | RuntimeException e) {
+                return null;
+            }
+        }
+
+        private static void save(URL url, File output, URLConnection con) throws IOException {
+            Map<HashFunction, String> hashes = DigestCache.hashAll(output, HashFunction.MD5, HashFunction.SHA1);
+            CacheMeta meta = new CacheMeta();
+            meta.url = url.toString();
+            meta.etag = con.getHeaderField("ETag");
+            meta.lastModified = con.getHeaderField("Last-Modified");
+            meta.length = output.length();
+            meta.md5 = hashes.get(HashFunction.MD5);
+            meta.sha1 = hashes.get(HashFunction.SHA1);
+            Files.write(getFile(output).toPath(), Utils.GSON.toJson(meta).getBytes(StandardCharsets.UTF_8));
+        }
+
+        private static void delete(File output) {
+            File file = getFile(output);
+            if (file.exists())
+                file.delete();
+        }
+    }
+
     public static HttpURLConnection connectHttpWithRedirects(URL url) throws IOException {
         return connectHttpWithRedirects(url, (setupCon) -> {});
     }
 
+    /**
+     * Connects to the URL, following redirects from http to https. Connection failures, timeouts and server errors are
+     * retried a few times with an increasing delay, any other response is returned to the caller.
+     * <p>
+     * The JDK keeps connections alive for reuse once a response body is read to the end and closed, so callers should do
+     * that even for responses they don't use.
+     *
+     * @param setup Called before connecting, after the default timeouts are set
+     */
     public static HttpURLConnection connectHttpWithRedirects(URL url, Consumer<HttpURLConnection> setup) throws IOException {
-        HttpURLConnection con = (HttpURLConnection) url.openConnection();
+        // The last attempt returns whatever the server answered, like a single attempt always did
+        return withRetries(url, last -> (HttpURLConnection)connect(url, setup, !last));
+    }
+
+    /*
+     * If retry is set, server errors that may go away are thrown instead of returned, so withRetries tries again.
+     */
+    private static URLConnection connect(URL url, Consumer<? super HttpURLConnection> setup, boolean retry) throws IOException {
+        URLConnection raw = url.openConnection();
+        raw.setConnectTimeout(CONNECT_TIMEOUT * 1000);
+        raw.setReadTimeout(READ_TIMEOUT * 1000);
+        STATS.requests.incrementAndGet();
+        if (!(raw instanceof HttpURLConnection)) {
+            raw.connect();
+            return raw;
+        }
+
+        HttpURLConnection con = (HttpURLConnection)raw;
         con.setInstanceFollowRedirects(true);
         con.addRequestProperty("Accept-Encoding", ACCEPT_ENCODING);
         setup.accept(con);
         con.connect();
+
+        int responseCode = con.getResponseCode();
+        if (retry && isRetryable(responseCode)) {
+            con.disconnect();
+            throw new HttpStatusException(url, responseCode);
+        }
         if ("http".equalsIgnoreCase(url.getProtocol())) {
-            int responseCode = con.getResponseCode();
             switch (responseCode) {
                 case HttpURLConnection.HTTP_MOVED_TEMP:
                 case HttpURLConnection.HTTP_MOVED_PERM:
@@ -228,7 +606,7 @@ public class DownloadUtils {
                         // Escalate from http to https.
                         // This is not done automatically by HttpURLConnection.setInstanceFollowRedirects
                         // See https://bugs.java.com/bugdatabase/view_bug.do?bug_id=4959149
-                        return connectHttpWithRedirects(newUrl, setup);
+                        return connect(newUrl, setup, retry);
                     }
                     break;
             }
@@ -236,17 +614,21 @@ public class DownloadUtils {
         return con;
     }
 
-    private static void downloadFileConsideringCompression(URLConnection connection, File output) throws IOException {
-        final int len = connection.getContentLength();
+    private static long downloadFileConsideringCompression(URLConnection connection, File output, Collection<MessageDigest> digests) throws IOException {
+        final long len = connection.getContentLengthLong();
         final InputStream in = getInputStream(connection);
         final File parent = output.getParentFile();
         if (parent != null) parent.mkdirs();
         try (final FileOutputStream fos = new FileOutputStream(output)) {
-            final int read = IOUtils.copy(in, fos);
+            OutputStream out = fos;
+            for (MessageDigest digest : digests)
+                out = new DigestOutputStream(out, digest);
+            final long read = IOUtils.copyLarge(in, out);
             // There will be a discrepancy between the bytes expected and read when we are sent a compressed response
             if (isEncoded(connection) && len != -1 && read != len) {
                 throw new IOException("Failed to read all data from " + connection.getURL() + "; got " + read + " expected " + len);
             }
+            return read;
         }
     }
 
@@ -270,6 +652,50 @@ public class DownloadUtils {
         return enc == null || enc.equals("identity");
     }
 
+    /**
+     * @return A human readable summary of the requests made and bytes downloaded since the daemon started.
+     */
+    public static String getStatistics() {
+        long nanos = STATS.time.get();
+        long bytes = STATS.bytes.get();
+        return String.format(Locale.ROOT, "%d requests, %d retries, %d failures, %.1f MiB downloaded in %.1fs (%.1f MiB/s)",
+                STATS.requests.get(), STATS.retries.get(), STATS.failures.get(), bytes / 1048576D, nanos / 1e9D,
+                nanos == 0 ? 0D : bytes / 1048576D / (nanos / 1e9D));
+    }
+
+    private static class Stats {
+        private final AtomicLong requests = new AtomicLong();
+        private final AtomicLong retries = new AtomicLong();
+        private final AtomicLong failures = new AtomicLong();
+        private final AtomicLong bytes = new AtomicLong();
+        private final AtomicLong time = new AtomicLong(); // Nanoseconds spent on requests made with a host permit
+    }
+
+    private static class HttpStatusException extends IOException {
+        private static final long serialVersionUID = 1L;
+        private final int code;
+
+        private HttpStatusException(URL url, int code) {
+            super("Server returned HTTP " + code + " for " + url);
+            this.code = code;
+        }
+    }
+
+    @FunctionalInterface
+    private interface Attempt<T> {
+        T run(boolean last) throws IOException;
+    }
+
+    @FunctionalInterface
+    private interface Handler<T> {
+        T run(URLConnection con) throws IOException;
+    }
+
+    @FunctionalInterface
+    public interface ResponseHandler {
+        void handle(HttpURLConnection con, InputStream body) throws IOException;
+    }
+
     @FunctionalInterface
     public interface DecompressionStrategy {
         InputStream wrap(InputStream stream) throws IOException;
@@ -9,14 +9,16 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.EnumMap;
 import java.util.Locale;
-
-import org.apache.commons.io.IOUtils;
+import java.util.Map;
 
 import javax.annotation.Nullable;
 
@@ -35,6 +37,8 @@ public enum HashFunction {
     SHA256("SHA-256", 64),
     SHA512("SHA-512", 128);
 
+    private static final int BUFFER_SIZE = 64 * 1024;
+
     private final String algo;
     private final String pad;
 
@@ -60,7 +64,9 @@ public enum HashFunction {
     }
 
     public String hash(Path file) throws IOException {
-        return hash(Files.readAllBytes(file));
+        MessageDigest hash = get();
+        update(file, hash);
+        return pad(new BigInteger(1, hash.digest()).toString(16));
     }
 
     public String hash(Iterable<File> files) throws IOException {
@@ -69,7 +75,7 @@ public enum HashFunction {
         for (File file : files) {
             if (!file.exists())
                 continue;
-            hash.update(Files.readAllBytes(file.toPath()));
+            update(file.toPath(), hash);
         }
         return pad(new BigInteger(1, hash.digest()).toString(16));
     }
@@ -79,7 +85,12 @@ public enum HashFunction {
     }
 
     public String hash(InputStream stream) throws IOException {
-        return hash(IOUtils.toByteArray(stream));
+        MessageDigest hash = get();
+        byte[] buf = new byte[BUFFER_SIZE];
+        int read;
+        while ((read = stream.read(buf)) != -1)
+            hash.update(buf, 0, read);
+        return pad(new BigInteger(1, hash.digest()).toString(16));
     }
 
     public String hash(byte[] data) {
@@ -89,4 +100,38 @@ public enum HashFunction {
     public String pad(String hash) {
         return (pad + hash).substring(hash.length());
     }
+
+    /**
+     * Computes several digests of a file while only reading it once.
+     */
+    public static Map<HashFunction, String> hashAll(Path file, HashFunction... functions) throws IOException {
+        MessageDigest[] digests = new MessageDigest[functions.length];
+        for (int x = 0; x < functions.length; x++)
+            digests[x] = functions[x].get();
+
+        update(file, digests);
+
+        Map<HashFunction, String> ret = new EnumMap<>(HashFunction.class);
+        for (int x = 0; x < functions.length; x++)
+            ret.put(functions[x], functions[x].pad(new BigInteger(1, digests[x].digest()).toString(16)));
+        return ret;
+    }
+
+    /**
+     * Streams the file through the digests with a fixed size buffer, so large jars never need to fit in memory.
+     */
+    private static void update(Path file, MessageDigest... digests) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buf = ByteBuffer.allocate(BUFFER_SIZE);
+            while (channel.read(buf) != -1) {
+                buf.flip();
+                for (MessageDigest digest : digests) {
+                    buf.mark();
+                    digest.update(buf);
+                    buf.reset();
+                }
+                buf.clear();
+            }
+        }
+    }
 }
@@ -57,12 +57,12 @@ public class HashStore {
             String hash = oldHashes.get(path);
             if (hash == null) {
                 if (file.exists()) {
-                    newHashes.put(path, HashFunction.SHA1.hash(file));
+                    newHashes.put(path, DigestCache.hash(file, HashFunction.SHA1));
                     return false;
                 }
                 return true;
             }
-            String fileHash = HashFunction.SHA1.hash(file);
+            String fileHash = DigestCache.hash(file, HashFunction.SHA1);
             newHashes.put(path, fileHash);
             return fileHash.equals(hash);
         } catch (IOException e) {
@@ -102,7 +102,7 @@ public class HashStore {
 
     public HashStore add(@Nullable String key, File file) {
         try {
-            newHashes.put(key == null ? getPath(file) : key, HashFunction.SHA1.hash(file));
+            newHashes.put(key == null ? getPath(file) : key, DigestCache.hash(file, HashFunction.SHA1));
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
@@ -0,0 +1,378 @@
+/*
+ * Copyright (c) Forge Development LLC and contributors
+ * SPDX-License-Identifier: LGPL-2.1-only
+ */
+
+package net.minecraftforge.gradle.common.util;
+
+import org.gradle.api.JavaVersion;
+import org.gradle.jvm.toolchain.JavaLanguageVersion;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.security.Permission;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+/**
+ * Runs tool jars inside the Gradle daemon instead of forking a new JVM for each invocation.
+ * <p>
+ * Each distinct set of tool jars gets its own isolated {@link URLClassLoader}, which is kept around and reused by later
+ * runs so they don't pay for class loading and JIT warm-up again. While tools are running, anything they print to
+ * {@code System.out} or {@code System.err} from their threads is sent to the given output, and {@code System.exit} is
+ * turned into an exception. The daemon's security manager and streams are put back once no tool is running.
+ * <p>
+ * This is opt-in through the {@value #ENABLE_PROPERTY} system property, and callers are expected to fall back to forking
+ * whenever {@link #canRun(JavaLanguageVersion, List)} says no.
+ */
+public class InProcessTools {
+    public static final String ENABLE_PROPERTY = "net.minecraftforge.gradle.in_process_tools";
+    private static final boolean ENABLED = Boolean.parseBoolean(System.getProperty(ENABLE_PROPERTY, "false"));
+    private static final int MAX_LOADERS = 8;
+
+    // Inherited so threads the tool starts are captured too. Threads outlive the run, so it is checked before use.
+    private static final InheritableThreadLocal<Capture> CAPTURE = new InheritableThreadLocal<>();
+    // Guarded by itself, which also guards the users of each Loader
+    private static final Map<String, Loader> LOADERS = new LinkedHashMap<String, Loader>(16, 0.75F, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Loader> eldest) {
+            if (size() <= MAX_LOADERS)
+                return false;
+            eldest.getValue().evict();
+            return true;
+        }
+    };
+
+    private static boolean unsupported;
+    // Guarded by the class lock
+    private static int running;
+    @Nullable
+    private static SecurityManager previousManager;
+    @Nullable
+    private static PrintStream previousOut;
+    @Nullable
+    private static PrintStream previousErr;
+
+    public static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    /**
+     * Checks if a tool that asks for the given Java version and JVM arguments can run in the current JVM.
+     * Only heap size arguments are allowed, and only if the daemon's heap is at least as big.
+     */
+    public static boolean canRun(@Nullable JavaLanguageVersion javaVersion, List<String> jvmArgs) {
+        if (javaVersion != null && !javaVersion.equals(JavaLanguageVersion.of(JavaVersion.current().getMajorVersion())))
+            return false;
+
+        for (String arg : jvmArgs) {
+            if (arg.startsWith("-Xms"))
+                continue;
+            if (!arg.startsWith("-Xmx"))
+                return false;
+            long requested = parseMemory(arg.substring(4));
+            if (requested < 0 || requested > Runtime.getRuntime().maxMemory())
+                return false;
+        }
+
+        return canInstallGuards();
+    }
+
+    /**
+     * Runs the main class from the given classpath on the current thread.
+     *
+     * @throws RuntimeException If the tool throws an exception or exits with a non-zero status
+     */
+    public static void run(Collection<File> classpath, String mainClass, List<String> args, OutputStream output) throws IOException {
+        Loader loader = getLoader(classpath);
+        try {
+            run(loader.loader, mainClass, args, output);
+        } finally {
+            loader.release();
+        }
+    }
+
+    private static void run(URLClassLoader loader, String mainClass, List<String> args, OutputStream output) {
+        Method main;
+        try {
+            main = Class.forName(mainClass, true, loader).getMethod("main", String[].class);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Could not find main method of " + mainClass, e);
+        }
+
+        if (!installGuards())
+            throw new IllegalStateException("Can not run " + mainClass + " in process, System.exit can not be intercepted");
+
+        Thread thread = Thread.currentThread();
+        ClassLoader context = thread.getContextClassLoader();
+        Capture capture = new Capture(new PrintStream(output, true));
+        CAPTURE.set(capture);
+        thread.setContextClassLoader(loader);
+        try {
+            main.invoke(null, (Object)args.toArray(new String[0]));
+        } catch (InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            if (!(cause instanceof ExitTrappedException))
+                throw new RuntimeException("Tool " + mainClass + " failed", cause);
+            int status = ((ExitTrappedException)cause).status;
+            if (status != 0)
+                throw new RuntimeException("Tool " + mainClass + " finished with non-zero exit value " + status);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Could not run main method of " + mainClass, e);
+        } finally {
+            capture.finish();
+            CAPTURE.remove();
+            thread.setContextClassLoader(context);
+            removeGuards();
+        }
+    }
+
+    /*
+     * The returned loader is in use until it is released.
+     */
+    private static Loader getLoader(Collection<File> classpath) throws IOException {
+        StringBuilder key = new StringBuilder();
+        URL[] urls = new URL[classpath.size()];
+        int idx = 0;
+        for (File file : classpath) {
+            key.append(file.isFile() ? DigestCache.hash(file, HashFunction.SHA1) : file.getAbsolutePath()).append(';');
+            urls[idx++] = file.toURI().toURL();
+        }
+
+        synchronized (LOADERS) {
+            // Parent is the platform loader, so nothing from Gradle or ForgeGradle leaks into the tool
+            Loader ret = LOADERS.computeIfAbsent(key.toString(), k -> new Loader(new URLClassLoader(urls, ClassLoader.getSystemClassLoader().getParent())));
+            ret.users++;
+            return ret;
+        }
+    }
+
+    /*
+     * The capture of the tool the current thread is running for, if that tool is still running.
+     */
+    @Nullable
+    private static PrintStream currentCapture() {
+        Capture capture = CAPTURE.get();
+        if (capture == null)
+            return null;
+        if (!capture.live) {
+            // Left over from a tool that started this thread and has finished since
+            CAPTURE.remove();
+            return null;
+        }
+        return capture.stream;
+    }
+
+    /*
+     * Only a guess from the Java version and flags, installGuards has the final say.
+     */
+    private static synchronized boolean canInstallGuards() {
+        if (unsupported)
+            return false;
+        if (running > 0 || System.getSecurityManager() != null)
+            return true;
+        int version = Integer.parseInt(JavaVersion.current().getMajorVersion());
+        // Java 18+ refuses to install a security manager unless -Djava.security.manager=allow is set, and 24+ always does
+        return version < 18 || (version < 24 && "allow".equals(System.getProperty("java.security.manager")));
+    }
+
+    /*
+     * Installed by the first running tool and removed by the last one, so parallel tools share the same guards.
+     */
+    private static synchronized boolean installGuards() {
+        if (running > 0) {
+            running++;
+            return true;
+        }
+        if (unsupported)
+            return false;
+
+        SecurityManager manager = System.getSecurityManager();
+        try {
+            System.setSecurityManager(new ExitGuard(manager));
+        } catch (SecurityException | UnsupportedOperationException e) {
+            unsupported = true;
+            return false;
+        }
+
+        previousManager = manager;
+        previousOut = System.out;
+        previousErr = System.err;
+        System.setOut(new RoutingPrintStream(previousOut));
+        System.setErr(new RoutingPrintStream(previousErr));
+        running = 1;
+        return true;
+    }
+
+    private static synchronized void removeGuards() {
+        if (--running > 0)
+            return;
+
+        // Only put things back if nothing else replaced them in the meantime
+        if (System.out instanceof RoutingPrintStream)
+            System.setOut(previousOut);
+        if (System.err instanceof RoutingPrintStream)
+            System.setErr(previousErr);
+        if (System.getSecurityManager() instanceof ExitGuard) {
+            try {
+                System.setSecurityManager(previousManager);
+            } catch (SecurityException e) {
+                // The previous manager doesn't allow replacing it, the guard passes everything through to it anyway
+            }
+        }
+        previousManager = null;
+        previousOut = null;
+        previousErr = null;
+    }
+
+    private static long parseMemory(String value) {
+        if (value.isEmpty())
+            return -1;
+        long scale = 1;
+        switch (value.toLowerCase(Locale.ROOT).charAt(value.length() - 1)) {
+            case 'k': scale = 1024L; break;
+            case 'm': scale = 1024L * 1024; break;
+            case 'g': scale = 1024L * 1024 * 1024; break;
+            case 't': scale = 1024L * 1024 * 1024 * 1024; break;
+        }
+        try {
+            return Long.parseLong(scale == 1 ? value : value.substring(0, value.length() - 1)) * scale;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /*
+     * A loader that is only closed once it was evicted and no tool is running from it anymore.
+     */
+    private static class Loader {
+        private final URLClassLoader loader;
+        // Guarded by LOADERS
+        private int users;
+        private boolean evicted;
+
+        private Loader(URLClassLoader loader) {
+            this.loader = loader;
+        }
+
+        private void evict() {
+            evicted = true;
+            if (users == 0)
+                close();
+        }
+
+        private void release() {
+            synchronized (LOADERS) {
+                if (--users == 0 && evicted)
+                    close();
+            }
+        }
+
+        private void close() {
+            try {
+                loader.close();
+            } catch (IOException e) {
+                // Nothing we can do, the loader is unreachable either way
+            }
+        }
+    }
+
+    private static class Capture {
+        private final PrintStream stream;
+        private volatile boolean live = true;
+
+        private Capture(PrintStream stream) {
+            this.stream = stream;
+        }
+
+        private void finish() {
+            live = false;
+            stream.flush();
+        }
+    }
+
+    private static class ExitTrappedException extends SecurityException {
+        private static final long serialVersionUID = 1L;
+        private final int status;
+
+        private ExitTrappedException(int status) {
+            super("System.exit(" + status + ") called by in process tool");
+            this.status = status;
+        }
+    }
+
+    @SuppressWarnings("removal")
+    private static class ExitGuard extends SecurityManager {
+        @Nullable
+        private final SecurityManager parent;
+
+        private ExitGuard(@Nullable SecurityManager parent) {
+            this.parent = parent;
+        }
+
+        @Override
+        public void checkExit(int status) {
+            if (currentCapture() != null)
+                throw new ExitTrappedException(status);
+            if (parent != null)
+                parent.checkExit(status);
+        }
+
+        @Override
+        public void checkPermission(Permission perm) {
+            if (parent != null)
+                parent.checkPermission(perm);
+        }
+
+        @Override
+        public void checkPermission(Permission perm, Object context) {
+            if (parent != null)
+                parent.checkPermission(perm, context);
+        }
+    }
+
+    /**
+     * Sends output from threads running a tool to that tool's capture, and everything else to the original stream.
+     */
+    private static class RoutingPrintStream extends PrintStream {
+        private final PrintStream original;
+
+        private RoutingPrintStream(PrintStream original) {
+            super(original, true);
+            this.original = original;
+        }
+
+        private PrintStream target() {
+            PrintStream capture = currentCapture();
+            return capture == null ? original : capture;
+        }
+
+        @Override
+        public void write(int b) {
+            target().write(b);
+        }
+
+        @Override
+        public void write(byte[] buf, int off, int len) {
+            target().write(buf, off, len);
+        }
+
+        @Override
+        public void flush() {
+            target().flush();
+        }
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) Forge Development LLC and contributors
+ * SPDX-License-Identifier: LGPL-2.1-only
+ */
+
+package net.minecraftforge.gradle.common.util;
+
+import org.gradle.api.logging.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.annotation.Nullable;
+
+/**
+ * The hash of every input file of a task, kept between runs so the task only has to process the files that changed.
+ * <p>
+ * The index is only used if the task's settings are the same as last time, and its output was not touched since.
+ * Files on disk are hashed through the {@link DigestCache}, so unchanged files are not read again.
+ */
+public class IncrementalIndex {
+    private final File file;
+    private final Logger logger;
+
+    public IncrementalIndex(File file, Logger logger) {
+        this.file = file;
+        this.logger = logger;
+    }
+
+    /**
+     * @param settings A hash of everything other than the files that affects the output
+     * @return The file hashes from the last run, or null if there is no usable index
+     */
+    @Nullable
+    public Map<String, String> load(String settings, Path output) throws IOException {
+        if (!file.exists())
+            return null;
+
+        Index index;
+        try {
+            index = Utils.loadJson(file, Index.class);
+        } catch (IOException | RuntimeException e) {
+            logger.info("Could not read incremental index {}", file, e);
+            return null;
+        }
+
+        if (!settings.equals(index.settings) || index.files == null || index.output == null || !index.output.equals(hashOutput(output)))
+            return null;
+        return index.files;
+    }
+
+    public void save(String settings, Map<String, String> files, Path output) throws IOException {
+        Index index = new Index();
+        index.settings = settings;
+        index.files = files;
+        index.output = hashOutput(output);
+        try (Writer writer = new OutputStreamWriter(Files.newOutputStream(file.toPath()), StandardCharsets.UTF_8)) {
+            Utils.GSON.toJson(index, writer);
+        }
+    }
+
+    public void delete() throws IOException {
+        if (file.exists() && !file.delete())
+            throw new IOException("Could not delete incremental index: " + file);
+    }
+
+    /**
+     * @return The name of every file that was added, changed or removed since the last run
+     */
+    public static Set<String> changed(Map<String, String> files, Map<String, String> old) {
+        Set<String> ret = new TreeSet<>();
+        files.forEach((name, hash) -> {
+            if (!hash.equals(old.get(name)))
+                ret.add(name);
+        });
+        for (String name : old.keySet()) {
+            if (!files.containsKey(name))
+                ret.add(name);
+        }
+        return ret;
+    }
+
+    /**
+     * Hashes every file in a directory or zip, by its relative path or entry name.
+     */
+    public static Map<String, String> hashFiles(Path path) throws IOException {
+        if (Files.isDirectory(path))
+            return hashDirectory(path);
+
+        Map<String, String> ret = new TreeMap<>();
+        try (RawZipFile zip = new RawZipFile(path.toFile())) {
+            for (RawZipFile.Entry entry : zip.getEntries()) {
+                if (entry.isDirectory())
+                    continue;
+                try (InputStream in = zip.getInputStream(entry)) {
+                    ret.put(entry.getName(), HashFunction.SHA1.hash(in));
+                }
+            }
+        }
+        return ret;
+    }
+
+    private static Map<String, String> hashOutput(Path output) throws IOException {
+        if (Files.isDirectory(output))
+            return hashDirectory(output);
+
+        Map<String, String> ret = new TreeMap<>();
+        if (Files.isRegularFile(output))
+            ret.put(output.getFileName().toString(), DigestCache.hash(output.toFile(), HashFunction.SHA1));
+        return ret;
+    }
+
+    private static Map<String, String> hashDirectory(Path dir) throws IOException {
+        Map<String, String> ret = new TreeMap<>();
+        try (Stream<Path> walk = Files.walk(dir)) {
+            for (Path file : walk.filter(Files::isRegularFile).collect(Collectors.toList()))
+                ret.put(dir.relativize(file).toString().replace('\\', '/'), DigestCache.hash(file.toFile(), HashFunction.SHA1));
+        }
+        return ret;
+    }
+
+    private static class Index {
+        String settings;
+        Map<String, String> files;
+        Map<String, String> output;
+    }
+}
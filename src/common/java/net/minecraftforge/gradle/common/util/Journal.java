@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) Forge Development LLC and contributors
+ * SPDX-License-Identifier: LGPL-2.1-only
+ */
+
+package net.minecraftforge.gradle.common.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * An append only file of lines in the ForgeGradle cache, shared by every daemon that uses the same cache.
+ * <p>
+ * The file is kept open for as long as the journal is used. Every write holds an exclusive lock on it, so lines from
+ * different daemons never interleave, and compaction rewrites the file in place rather than replacing it, so the other
+ * daemons keep writing to the same file.
+ */
+class Journal implements AutoCloseable {
+    private final Path path;
+    private final FileChannel channel;
+    private int lines;
+
+    Journal(Path path) throws IOException {
+        Files.createDirectories(path.getParent());
+        this.path = path;
+        // Not APPEND, the JDK doesn't allow it together with READ. Writers hold the lock, so the end doesn't move under them.
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    /**
+     * @return The number of lines in the file, as far as this daemon knows.
+     */
+    synchronized int getLines() {
+        return lines;
+    }
+
+    /**
+     * Reads every complete line in the file.
+     */
+    synchronized List<String> read() throws IOException {
+        try (FileLock lock = channel.lock(0, Long.MAX_VALUE, true)) {
+            List<String> ret = readLines();
+            lines = ret.size();
+            return ret;
+        }
+    }
+
+    synchronized void append(String line) throws IOException {
+        ByteBuffer buf = ByteBuffer.wrap((line + '\n').getBytes(StandardCharsets.UTF_8));
+        try (FileLock lock = channel.lock()) {
+            long position = channel.size();
+            while (buf.hasRemaining())
+                position += channel.write(buf, position);
+            lines++;
+        }
+    }
+
+    /**
+     * Replaces the content of the file with the lines the compactor keeps. The compactor is given every line currently
+     * in the file, including the ones other daemons appended, and no one can write to the file until it is done.
+     */
+    synchronized void compact(Function<List<String>, Collection<String>> compactor) throws IOException {
+        try (FileLock lock = channel.lock()) {
+            Collection<String> kept = compactor.apply(readLines());
+            StringBuilder data = new StringBuilder();
+            for (String line : kept)
+                data.append(line).append('\n');
+
+            ByteBuffer buf = ByteBuffer.wrap(data.toString().getBytes(StandardCharsets.UTF_8));
+            long position = 0;
+            while (buf.hasRemaining())
+                position += channel.write(buf, position);
+            channel.truncate(position);
+            lines = kept.size();
+        }
+    }
+
+    /*
+     * A line without its newline is still being written, or was cut off by a crash, so it is left out.
+     */
+    private List<String> readLines() throws IOException {
+        long size = channel.size();
+        if (size > Integer.MAX_VALUE)
+            throw new IOException("Journal too large: " + path);
+
+        ByteBuffer buf = ByteBuffer.allocate((int)size);
+        while (buf.hasRemaining() && channel.read(buf, buf.position()) != -1) {
+            // Keep reading until the buffer is full
+        }
+
+        List<String> ret = new ArrayList<>();
+        byte[] data = buf.array();
+        int start = 0;
+        for (int x = 0; x < buf.position(); x++) {
+            if (data[x] == '\n') {
+                ret.add(new String(data, start, x - start, StandardCharsets.UTF_8));
+                start = x + 1;
+            }
+        }
+        return ret;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) Forge Development LLC and contributors
+ * SPDX-License-Identifier: LGPL-2.1-only
+ */
+
+package net.minecraftforge.gradle.common.util;
+
+import net.minecraftforge.srgutils.IMappingFile;
+
+import org.gradle.api.Project;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.SoftReference;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps parsed mapping files, and views derived from them, in memory for as long as the Gradle daemon has room for them.
+ * <p>
+ * Entries are keyed by the SHA1 of the file's content, which the {@link DigestCache} usually already knows, so a file
+ * that changed on disk is parsed again and two copies of the same file share one entry. Values are held through soft
+ * references, so the JVM drops them before running out of memory. Everything returned is shared between tasks and
+ * threads, and must not be modified; {@link IMappingFile} and {@link McpNames} are immutable.
+ * <p>
+ * Set the system property {@code net.minecraftforge.gradle.mapping_cache} to {@code false} to parse files every time.
+ */
+public class MappingCache {
+    private static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("net.minecraftforge.gradle.mapping_cache", "true"));
+    private static final Logger LOGGER = Logging.getLogger(MappingCache.class);
+
+    private static final Map<String, SoftReference<Object>> ENTRIES = new ConcurrentHashMap<>();
+    private static final AtomicLong HITS = new AtomicLong();
+    private static final AtomicLong MISSES = new AtomicLong();
+
+    /**
+     * Parses the mapping file, in any format srgutils supports.
+     */
+    public static IMappingFile load(File file) throws IOException {
+        return get("mappings", file, () -> IMappingFile.load(file));
+    }
+
+    /**
+     * The mapping file with its original and mapped names swapped.
+     */
+    public static IMappingFile loadReversed(File file) throws IOException {
+        return derive(file, "reversed", IMappingFile::reverse);
+    }
+
+    /**
+     * The mapping file chained onto its own reverse, which maps its mapped names to themselves.
+     */
+    public static IMappingFile loadIdentity(File file) throws IOException {
+        return derive(file, "identity", mappings -> mappings.reverse().chain(mappings));
+    }
+
+    /**
+     * The original names of every class in the mapping file.
+     */
+    public static Set<String> getOriginalClasses(File file) throws IOException {
+        return derive(file, "classes-original", mappings -> Collections.unmodifiableSet(mappings.getClasses().stream()
+                .map(IMappingFile.IClass::getOriginal).collect(Collectors.toSet())));
+    }
+
+    /**
+     * The mapped names of every class in the mapping file.
+     */
+    public static Set<String> getMappedClasses(File file) throws IOException {
+        return derive(file, "classes-mapped", mappings -> Collections.unmodifiableSet(mappings.getClasses().stream()
+                .map(IMappingFile.IClass::getMapped).collect(Collectors.toSet())));
+    }
+
+    /**
+     * The names and docs of an MCP mappings zip, see {@link McpNames#load(File, File)}. The index is kept in the
+     * ForgeGradle cache of the project.
+     */
+    public static McpNames loadNames(Project project, File file) throws IOException {
+        File indexDir = Utils.getCache(project, "mcp_names");
+        return get("names", file, () -> McpNames.load(file, indexDir));
+    }
+
+    /**
+     * A view of the parsed mapping file, computed once per file content and kind.
+     *
+     * @param kind Names the view, different functions must use different kinds
+     */
+    public static <T> T derive(File file, String kind, Function<IMappingFile, T> function) throws IOException {
+        return get(kind, file, () -> function.apply(load(file)));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T get(String kind, File file, Loader<T> loader) throws IOException {
+        if (!ENABLED)
+            return loader.load();
+
+        String key = kind + ':' + DigestCache.hash(file, HashFunction.SHA1);
+        SoftReference<Object> ref = ENTRIES.get(key);
+        Object value = ref == null ? null : ref.get();
+        if (value != null) {
+            HITS.incrementAndGet();
+            LOGGER.debug("Mapping cache hit for {} of {}", kind, file);
+            return (T)value;
+        }
+
+        // Loaded outside of the map, so a slow parse doesn't block unrelated keys. Two threads may both parse the same
+        // file, both results are the same and the last one is kept.
+        MISSES.incrementAndGet();
+        long start = System.currentTimeMillis();
+        T ret = loader.load();
+        ENTRIES.put(key, new SoftReference<>(ret));
+        ENTRIES.values().removeIf(r -> r.get() == null);
+        LOGGER.info("Mapping cache loaded {} of {} in {}ms, {}", kind, file, System.currentTimeMillis() - start, getStatistics());
+        return ret;
+    }
+
+    /**
+     * @return A human readable summary of the hits and misses since the daemon started.
+     */
+    public static String getStatistics() {
+        long hits = HITS.get();
+        long misses = MISSES.get();
+        long total = hits + misses;
+        return String.format(Locale.ROOT, "%d hits, %d misses (%.1f%% hit rate), %d entries",
+                hits, misses, total == 0 ? 0D : hits * 100D / total, ENTRIES.size());
+    }
+
+    @FunctionalInterface
+    private interface Loader<T> {
+        T load() throws IOException;
+    }
+}
@@ -32,21 +32,33 @@ import groovy.util.Node;
 import groovy.xml.XmlParser;
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.HttpURLConnection;
+import java.net.ProtocolException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Base64;
-import java.util.HashMap;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Future;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
 
 import javax.annotation.Nullable;
 import javax.xml.parsers.ParserConfigurationException;
@@ -56,14 +68,25 @@ public class MavenArtifactDownloader {
      * This tracks downloads that are <b>currently</b> active. As soon as a download has finished it will be removed
      * from this map.
      */
-    private static final Map<DownloadKey, Future<File>> ACTIVE_DOWNLOADS = new HashMap<>();
+    private static final Map<DownloadKey, CompletableFuture<File>> ACTIVE_DOWNLOADS = new ConcurrentHashMap<>();
 
     private static final Cache<String, File> CACHE = CacheBuilder.newBuilder()
             .expireAfterWrite(5, TimeUnit.MINUTES)
             .build();
-    private static final Map<Project, Integer> COUNTER = new HashMap<>();
 
-    private static final Map<String, String> VERSIONS = new HashMap<>();
+    private static final Map<String, String> VERSIONS = new ConcurrentHashMap<>();
+
+    private static final boolean PARALLEL_PROBES = Boolean.parseBoolean(System.getProperty("net.minecraftforge.gradle.parallel_probes", "true"));
+    private static final int PROBE_TIMEOUT = (int)TimeUnit.SECONDS.toMillis(30);
+    private static final ExecutorService PROBES = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "Maven Probe");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static final Map<String, RepoStats> REPO_STATS = new ConcurrentHashMap<>();
+    // The generated repositories are hidden from these, see hideFromGradle. Resolves that need them wait for a free one.
+    private static final String[] GRADLE_CONFIGURATION_NAMES = IntStream.rangeClosed(1, 4).mapToObj(x -> "mavenDownloader_" + x).toArray(String[]::new);
+    private static final BlockingQueue<String> GRADLE_CONFIGURATIONS = new LinkedBlockingQueue<>(Arrays.asList(GRADLE_CONFIGURATION_NAMES));
 
     @Nullable
     public static File download(Project project, String artifact, boolean changing) {
@@ -96,43 +119,31 @@ public class MavenArtifactDownloader {
     @Nullable
     private static File _download(Project project, String artifact, boolean changing, boolean generated, boolean gradle, boolean manual) {
         /*
-         * This somewhat convoluted code is necessary to avoid race-conditions when two Gradle worker threads simultaneously
-         * try to download the same artifact.
-         * The first thread registers a future that other threads can wait on.
+         * This is necessary to avoid race-conditions when two Gradle worker threads simultaneously try to download the
+         * same artifact.
+         * The first thread registers a future that other threads with the same key wait on, threads downloading other
+         * artifacts are not blocked at all.
          * Once it finishes, the future will be removed and subsequent calls will use the CACHE instead.
          * We use all parameters of the function as the key here to prevent subtle bugs where the same artifact
          * is looked up simultaneously with different resolver-options, leading only to one attempt being made.
          */
         DownloadKey downloadKey = new DownloadKey(project, artifact, changing, generated, gradle, manual);
-        CompletableFuture<File> future;
-        synchronized (ACTIVE_DOWNLOADS) {
-            Future<File> activeDownload = ACTIVE_DOWNLOADS.get(downloadKey);
-            if (activeDownload != null) {
-                // Some other thread is already working downloading this exact artifact, wait for it to finish
-                try {
-                    project.getLogger().info("Waiting for download of {} on other thread", artifact);
-                    while (!activeDownload.isDone()) {
-                        // Release the monitor of ACTIVE_DOWNLOADS while waiting on the download;
-                        // when a new download finishes, we'll get notified and we can check whether the download is complete again.
-                        ACTIVE_DOWNLOADS.wait();
-                    }
-                    return activeDownload.get();
-                } catch (InterruptedException e) {
-                    throw new RuntimeException(e);
-                } catch (ExecutionException e) {
-                    if (e.getCause() instanceof RuntimeException) {
-                        throw (RuntimeException) e.getCause();
-                    } else {
-                        throw new RuntimeException(e.getCause());
-                    }
+        CompletableFuture<File> future = new CompletableFuture<>();
+        CompletableFuture<File> activeDownload = ACTIVE_DOWNLOADS.putIfAbsent(downloadKey, future);
+        if (activeDownload != null) {
+            // Some other thread is already working downloading this exact artifact, wait for it to finish
+            project.getLogger().info("Waiting for download of {} on other thread", artifact);
+            try {
+                return activeDownload.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                } else {
+                    throw new RuntimeException(e.getCause());
                 }
-            } else {
-                project.getLogger().info("Downloading {}", artifact);
-                // We're the first thread to download the artifact, make sure concurrent downloads just wait for us
-                future = new CompletableFuture<>();
-                ACTIVE_DOWNLOADS.put(downloadKey, future);
             }
         }
+        project.getLogger().info("Downloading {}", artifact);
 
         File ret = null;
         try {
@@ -177,10 +188,7 @@ public class MavenArtifactDownloader {
             future.completeExceptionally(e);
             e.printStackTrace();
         } finally {
-            synchronized (ACTIVE_DOWNLOADS) {
-                ACTIVE_DOWNLOADS.remove(downloadKey);
-                ACTIVE_DOWNLOADS.notifyAll();
-            }
+            ACTIVE_DOWNLOADS.remove(downloadKey, future);
         }
         return ret;
     }
@@ -197,53 +205,135 @@ public class MavenArtifactDownloader {
 
     @Nullable
     private static File _manual(Project project, List<MavenArtifactRepository> repos, Artifact artifact, boolean changing) throws IOException, URISyntaxException {
-        if (!artifact.getVersion().endsWith("+") && !artifact.isSnapshot()) {
-            for (MavenArtifactRepository repo : repos) {
-                Pair<Artifact, File> pair = _manualMaven(project, repo, repo, artifact, changing);
-                if (pair != null && pair.getValue().exists())
-                    return pair.getValue();
+        boolean dynamic = artifact.getVersion().endsWith("+");
+        List<MavenArtifactRepository> candidates = new ArrayList<>();
+        for (MavenArtifactRepository repo : repos) {
+            if (RepositoryContentUtils.contentFilterExcludes(repo, artifact)) //The repo can never provide the artifact
+                continue;
+            if (!dynamic && isRemote(repo) && ResolutionCache.isMissing(repo.getUrl(), artifact.getPath())) //The repo didn't have it recently
+                continue;
+            candidates.add(repo);
+        }
+        // Repos that keep failing are asked last, otherwise the declared order wins
+        candidates.sort(Comparator.comparing(repo -> getStats(repo).isFailing()));
+
+        if (!dynamic && !artifact.isSnapshot()) {
+            if (!changing) {
+                // Every repo downloads to the same place, so there is nothing to ask them if we already have it
+                File cached = DownloadUtils.getCached(Utils.getCache(project, "maven_downloader", artifact.getPath()));
+                if (cached != null)
+                    return cached;
+            }
+
+            // The first repo usually has it, so it is simply downloaded from. Only if it doesn't are the others all asked
+            // at once, still taking the first one in order that has it.
+            boolean parallel = PARALLEL_PROBES && candidates.size() > 2;
+            List<CompletableFuture<Probe>> probes = new ArrayList<>();
+            try {
+                for (int x = 0; x < candidates.size(); x++) {
+                    MavenArtifactRepository repo = candidates.get(x);
+                    if (x == 1) {
+                        for (MavenArtifactRepository other : candidates.subList(1, candidates.size())) {
+                            if (!parallel)
+                                probes.add(CompletableFuture.completedFuture(Probe.UNKNOWN));
+                            else if (isRemote(other) && ResolutionCache.isFound(other.getUrl(), artifact.getPath()))
+                                probes.add(CompletableFuture.completedFuture(Probe.FOUND));
+                            else
+                                probes.add(CompletableFuture.supplyAsync(() -> probe(project, other, artifact.getPath()), PROBES));
+                        }
+                    }
+                    Probe probe = x == 0 ? Probe.UNKNOWN : probes.get(x - 1).join();
+                    if (probe == Probe.MISSING) {
+                        recordMissing(repo, artifact.getPath());
+                        continue;
+                    }
+                    File ret = _downloadWithCache(project, repo, repo.getUrl(), artifact.getPath(), changing, false);
+                    if (ret != null && ret.exists()) {
+                        if (isRemote(repo))
+                            ResolutionCache.recordFound(repo.getUrl(), artifact.getPath());
+                        return ret;
+                    }
+                    // A failed download may just be a flaky repo, only a clear answer to a probe marks the file missing
+                    if (probe == Probe.UNKNOWN && isRemote(repo) && probe(project, repo, artifact.getPath()) == Probe.MISSING)
+                        recordMissing(repo, artifact.getPath());
+                }
+            } finally {
+                // Probes that haven't started yet are skipped, the rest are only HEAD requests
+                probes.forEach(f -> f.cancel(false));
             }
             return null;
         }
 
-        List<Pair<Artifact, File>> versions = new ArrayList<>();
+        if (dynamic) {
+            String known = ResolutionCache.getVersion(artifact.getDescriptor());
+            if (known != null) {
+                File ret = _manual(project, repos, Artifact.from(artifact.getGroup(), artifact.getName(), known, artifact.getClassifier(), artifact.getExtension()), changing);
+                if (ret != null) {
+                    VERSIONS.put(artifact.getDescriptor(), known);
+                    return ret;
+                }
+            }
+        }
 
         // Gather list of all versions from all repos.
-        for (MavenArtifactRepository repo : repos) {
-            Pair<Artifact, File> pair = _manualMaven(project, repo, repo, artifact, changing);
-            if (pair != null && pair.getValue().exists())
-                versions.add(pair);
+        Executor executor = PARALLEL_PROBES ? PROBES : Runnable::run;
+        List<CompletableFuture<Artifact>> resolving = new ArrayList<>();
+        for (MavenArtifactRepository repo : candidates) {
+            resolving.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    return _resolveVersion(project, repo, artifact);
+                } catch (IOException | URISyntaxException e) {
+                    throw new CompletionException(e);
+                }
+            }, executor));
         }
 
-        Artifact version = null;
-        File ret = null;
-        for (Pair<Artifact, File> ver : versions) {
-            //Select highest version
-            if (version == null || version.compareTo(ver.getKey()) < 0) {
-                version = ver.getKey();
-                ret = ver.getValue();
+        List<Pair<Artifact, MavenArtifactRepository>> versions = new ArrayList<>();
+        for (int x = 0; x < candidates.size(); x++) {
+            Artifact version;
+            try {
+                version = resolving.get(x).join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof IOException)
+                    throw (IOException)e.getCause();
+                if (e.getCause() instanceof URISyntaxException)
+                    throw (URISyntaxException)e.getCause();
+                throw e;
             }
+            if (version != null)
+                versions.add(ImmutablePair.of(version, candidates.get(x)));
         }
 
-        if (ret == null)
-            return null;
-
-        VERSIONS.put(artifact.getDescriptor(), version.getVersion());
-        return ret;
+        //Select highest version, the first repo to have it if there is a tie
+        versions.sort(Comparator.comparing(Pair::getKey, Comparator.reverseOrder()));
+        for (Pair<Artifact, MavenArtifactRepository> ver : versions) {
+            MavenArtifactRepository repo = ver.getValue();
+            File ret = _downloadWithCache(project, repo, repo.getUrl(), ver.getKey().getPath(), changing, false);
+            if (ret != null && ret.exists()) {
+                VERSIONS.put(artifact.getDescriptor(), ver.getKey().getVersion());
+                ResolutionCache.recordVersion(artifact.getDescriptor(), ver.getKey().getVersion());
+                if (isRemote(repo))
+                    ResolutionCache.recordFound(repo.getUrl(), ver.getKey().getPath());
+                return ret;
+            }
+        }
+        return null;
     }
 
+    /**
+     * Finds the version of the artifact this repo would provide, or null if it has none.
+     */
     @SuppressWarnings("unchecked")
     @Nullable
-    private static Pair<Artifact, File> _manualMaven(Project project, @Nullable AuthenticationSupported auth, MavenArtifactRepository mavenRepo, Artifact artifact, boolean changing) throws IOException, URISyntaxException {
-        if (RepositoryContentUtils.contentFilterExcludes(mavenRepo, artifact)) {
-            //The repo can never provide the artifact
-            return null;
-        }
+    private static Artifact _resolveVersion(Project project, MavenArtifactRepository mavenRepo, Artifact artifact) throws IOException, URISyntaxException {
         URI maven = mavenRepo.getUrl();
         if (artifact.getVersion().endsWith("+")) {
             //I THINK +'s are only valid in the end version, So 1.+ and not 1.+.4 as that'd make no sense.
             //It also appears you can't do something like 1.5+ to NOT get 1.4/1.3. So.. mimic that.
-            File meta = _downloadWithCache(project, auth, maven, artifact.getGroup().replace('.', '/') + '/' + artifact.getName() + "/maven-metadata.xml", true, true);
+            String path = artifact.getGroup().replace('.', '/') + '/' + artifact.getName() + "/maven-metadata.xml";
+            // Each repo has its own metadata, and they may be downloaded at the same time
+            File target = Utils.getCache(project, "maven_downloader", "metadata", HashFunction.MD5.hash(maven.toString()), path);
+            File meta = _downloadWithCache(mavenRepo, maven, path, target, true, true);
             if (meta == null)
                 return null; //Don't error, other repos might have it.
             try {
@@ -270,7 +360,7 @@ public class MavenArtifactDownloader {
                     .reduce((first, second) -> second).orElse(null);
                 if (highest == null)
                     return null; //We have no versions that match what we want, so move on to next repo.
-                artifact = Artifact.from(artifact.getGroup(), artifact.getName(), highest.toString(), artifact.getClassifier(), artifact.getExtension());
+                return Artifact.from(artifact.getGroup(), artifact.getName(), highest.toString(), artifact.getClassifier(), artifact.getExtension());
             } catch (SAXException | ParserConfigurationException e) {
                 meta.delete();
                 throw new IOException("Invalid maven-metadata.xml file", e);
@@ -279,9 +369,98 @@ public class MavenArtifactDownloader {
             return null; //TODO
             //throw new IllegalArgumentException("Snapshot versions are not supported, yet... " + artifact.getDescriptor());
         }
+        return artifact;
+    }
 
-        File ret = _downloadWithCache(project, auth, maven, artifact.getPath(), changing, false);
-        return ret == null ? null : ImmutablePair.of(artifact, ret);
+    /*
+     * Checks if the repo has the file without downloading it, with a HEAD request for http repos. Anything that isn't a
+     * clear yes or no, like a repo that doesn't allow HEAD requests, is unknown and the file is simply downloaded.
+     */
+    private static Probe probe(Project project, MavenArtifactRepository repo, String path) {
+        RepoStats stats = getStats(repo);
+        long start = System.nanoTime();
+        try {
+            URL url = getUrl(repo.getUrl(), path);
+            String proto = url.getProtocol().toLowerCase(Locale.ROOT);
+            if ("file".equals(proto))
+                return new File(url.toURI()).isFile() ? Probe.FOUND : Probe.MISSING;
+            if (!"http".equals(proto) && !"https".equals(proto))
+                return Probe.UNKNOWN;
+
+            Map<String, String> headers = getHeaders(repo);
+            HttpURLConnection con = DownloadUtils.connectHttpWithRedirects(url, setup -> {
+                setup.setConnectTimeout(PROBE_TIMEOUT);
+                setup.setReadTimeout(PROBE_TIMEOUT);
+                try {
+                    setup.setRequestMethod("HEAD");
+                } catch (ProtocolException e) {
+                    throw new UncheckedIOException(e);
+                }
+                if (headers != null)
+                    headers.forEach(setup::setRequestProperty);
+            });
+            int code = con.getResponseCode();
+            con.disconnect();
+
+            long time = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            stats.success(time);
+            project.getLogger().debug("Probed {} for {} in {}ms: {} (average {}ms)", repo.getUrl(), path, time, code, stats.latency);
+            if (code == HttpURLConnection.HTTP_OK)
+                return Probe.FOUND;
+            if (code == HttpURLConnection.HTTP_NOT_FOUND || code == HttpURLConnection.HTTP_GONE)
+                return Probe.MISSING;
+            return Probe.UNKNOWN;
+        } catch (IOException | URISyntaxException | RuntimeException e) {
+            stats.failure();
+            project.getLogger().debug("Failed to probe {} for {}, {} failures in a row", repo.getUrl(), path, stats.failures.get(), e);
+            return Probe.UNKNOWN;
+        }
+    }
+
+    /*
+     * Only remote repos are remembered in the resolution cache. Local ones are free to check, and may be published to
+     * at any time, such as mavenLocal by publishToMavenLocal.
+     */
+    private static boolean isRemote(MavenArtifactRepository repo) {
+        String scheme = repo.getUrl().getScheme();
+        return "http".equalsIgnoreCase(scheme) || "https".equalsIgnoreCase(scheme);
+    }
+
+    private static void recordMissing(MavenArtifactRepository repo, String path) {
+        if (isRemote(repo))
+            ResolutionCache.recordMissing(repo.getUrl(), path);
+    }
+
+    private static RepoStats getStats(MavenArtifactRepository repo) {
+        return REPO_STATS.computeIfAbsent(repo.getUrl().toString(), k -> new RepoStats());
+    }
+
+    private enum Probe {
+        FOUND, MISSING, UNKNOWN
+    }
+
+    /**
+     * Latency and failures of the probes to a repo, for as long as the daemon lives.
+     */
+    private static class RepoStats {
+        private static final int FAILURE_LIMIT = 3;
+
+        private final AtomicInteger failures = new AtomicInteger(); // In a row
+        private volatile long latency = -1; // Moving average, in ms
+
+        private void success(long time) {
+            failures.set(0);
+            long old = latency;
+            latency = old < 0 ? time : (old * 3 + time) / 4;
+        }
+
+        private void failure() {
+            failures.incrementAndGet();
+        }
+
+        private boolean isFailing() {
+            return failures.get() >= FAILURE_LIMIT;
+        }
     }
 
     //I'm sure there is a better way but not sure at the moment
@@ -299,61 +478,100 @@ public class MavenArtifactDownloader {
 
     @Nullable
     private static File _gradle(Project project, List<ArtifactRepository> repos, Artifact mine, boolean changing) {
-        String name = "mavenDownloader_" + mine.getDescriptor().replace(':', '_');
-        synchronized(project) {
-            int count = COUNTER.getOrDefault(project, 1);
-            name += "_" + count++;
-            COUNTER.put(project, count);
+        // Maven repositories were already tried by _manual, and only these are left to Gradle
+        if (repos.isEmpty()) {
+            project.getLogger().debug("No non-maven repositories to resolve {} from", mine.getDescriptor());
+            return null;
         }
 
-        //Remove old repos, and only use the ones we're told to.
-        List<ArtifactRepository> old = new ArrayList<>(project.getRepositories());
-        project.getRepositories().clear();
-        project.getRepositories().addAll(repos);
-
-        Configuration cfg = project.getConfigurations().create(name);
-        ExternalModuleDependency dependency = (ExternalModuleDependency)project.getDependencies().create(mine.getDescriptor());
-        dependency.setChanging(changing);
-        cfg.getDependencies().add(dependency);
-        cfg.resolutionStrategy(strat -> {
-            strat.cacheChangingModulesFor(5, TimeUnit.MINUTES);
-            strat.cacheDynamicVersionsFor(5, TimeUnit.MINUTES);
-        });
-        Set<File> files;
+        boolean hide = project.getRepositories().stream().anyMatch(repo -> repo instanceof GradleRepositoryAdapter);
+        String name = null;
+        Configuration cfg;
         try {
-            files = cfg.resolve();
-        } catch (NullPointerException npe) {
-            // This happens for unknown reasons deep in Gradle code... so we SHOULD find a way to fix it, but
-            //honestly i'd rather deprecate this whole system and replace it with downloading things ourselves.
-            project.getLogger().error("Failed to download " + mine.getDescriptor() + " gradle exploded");
-            return null;
+            if (hide) {
+                name = GRADLE_CONFIGURATIONS.take();
+                synchronized (project.getConfigurations()) {
+                    cfg = project.getConfigurations().create(name);
+                }
+            } else {
+                // Nothing to keep away from Gradle, the maven repositories are at worst asked again
+                cfg = project.getConfigurations().detachedConfiguration();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting to resolve " + mine.getDescriptor(), e);
         }
-        File ret = files.iterator().next(); //We only want the first, not transitive
 
-        cfg.getResolvedConfiguration().getResolvedArtifacts().forEach(art -> {
-            ModuleVersionIdentifier resolved = art.getModuleVersion().getId();
-            if (resolved.getGroup().equals(mine.getGroup()) && resolved.getName().equals(mine.getName())) {
-                if ((mine.getClassifier() == null && art.getClassifier() == null) || mine.getClassifier().equals(art.getClassifier()))
-                    VERSIONS.put(mine.getDescriptor(), resolved.getVersion());
+        try {
+            ExternalModuleDependency dependency = (ExternalModuleDependency)project.getDependencies().create(mine.getDescriptor());
+            dependency.setChanging(changing);
+            cfg.getDependencies().add(dependency);
+            cfg.setTransitive(false);
+            cfg.resolutionStrategy(strat -> {
+                strat.cacheChangingModulesFor(5, TimeUnit.MINUTES);
+                strat.cacheDynamicVersionsFor(5, TimeUnit.MINUTES);
+            });
+
+            Set<File> files;
+            try {
+                files = cfg.resolve();
+            } catch (NullPointerException npe) {
+                // This happens for unknown reasons deep in Gradle code... so we SHOULD find a way to fix it, but
+                //honestly i'd rather deprecate this whole system and replace it with downloading things ourselves.
+                project.getLogger().error("Failed to download " + mine.getDescriptor() + " gradle exploded");
+                return null;
             }
-        });
+            File ret = files.iterator().next(); //We only want the first, not transitive
 
-        project.getConfigurations().remove(cfg);
+            cfg.getResolvedConfiguration().getResolvedArtifacts().forEach(art -> {
+                ModuleVersionIdentifier resolved = art.getModuleVersion().getId();
+                if (resolved.getGroup().equals(mine.getGroup()) && resolved.getName().equals(mine.getName())) {
+                    if (Objects.equals(mine.getClassifier(), art.getClassifier()))
+                        VERSIONS.put(mine.getDescriptor(), resolved.getVersion());
+                }
+            });
 
-        project.getRepositories().clear(); //Clear the repos so we can re-add in the correct oder.
-        project.getRepositories().addAll(old); //Readd all the normal repos.
-        return ret;
+            return ret;
+        } finally {
+            if (name != null) {
+                synchronized (project.getConfigurations()) {
+                    project.getConfigurations().remove(cfg);
+                }
+                GRADLE_CONFIGURATIONS.add(name);
+            }
+        }
+    }
+
+    /**
+     * Keeps Gradle from asking a generated repository when resolving through the downloader. Generating an artifact
+     * can end up downloading the same artifact again, and would wait on itself. Gradle can only filter repositories by
+     * the name of the configuration, and only before they are first used, so this has to be called as soon as the
+     * repository is added.
+     */
+    public static void hideFromGradle(ArtifactRepository repo) {
+        repo.content(content -> content.notForConfigurations(GRADLE_CONFIGURATION_NAMES));
     }
 
     @Nullable
     private static File _downloadWithCache(Project project, @Nullable AuthenticationSupported auth, URI maven, String path, boolean changing, boolean bypassLocal) throws IOException, URISyntaxException {
-        URL url = new URIBuilder(maven)
+        return _downloadWithCache(auth, maven, path, Utils.getCache(project, "maven_downloader", path), changing, bypassLocal);
+    }
+
+    @Nullable
+    private static File _downloadWithCache(@Nullable AuthenticationSupported auth, URI maven, String path, File target, boolean changing, boolean bypassLocal) throws IOException, URISyntaxException {
+        return DownloadUtils.downloadWithCache(getUrl(maven, path), target, getHeaders(auth), changing, bypassLocal);
+    }
+
+    private static URL getUrl(URI maven, String path) throws IOException, URISyntaxException {
+        return new URIBuilder(maven)
             .setPath(maven.getPath() + '/' + path)
             .build()
             .normalize()
             .toURL();
-        File target = Utils.getCache(project, "maven_downloader", path);
+    }
 
+    @Nullable
+    private static Map<String, String> getHeaders(@Nullable AuthenticationSupported auth) {
         Map<String, String> headers = null;
         if (auth != null && !auth.getAuthentication().isEmpty() && auth.getAuthentication().stream().anyMatch(a -> a instanceof BasicAuthentication)) {
             // We use this to prevent an IllegalStateException with getCredentials() if non-password credentials are used.
@@ -365,8 +583,7 @@ public class MavenArtifactDownloader {
                 );
             }
         }
-
-        return DownloadUtils.downloadWithCache(url, target, headers, changing, bypassLocal);
+        return headers;
     }
 
     /**
@@ -14,18 +14,23 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.StringReader;
+import java.io.UncheckedIOException;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Deque;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Predicate;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -35,6 +40,9 @@ import java.util.zip.ZipFile;
 import javax.annotation.Nullable;
 
 public class McpNames {
+    private static final boolean PARALLEL_RENAME = Boolean.parseBoolean(System.getProperty("net.minecraftforge.gradle.parallel_rename", "true"));
+    private static final int RENAME_WINDOW = 512; // Max number of renamed files held in memory waiting to be written
+    private static final String SRG_FINDER_MODE = System.getProperty("net.minecraftforge.gradle.srg_finder", "scanner"); // scanner, regex, or verify
     private static final String NEWLINE = System.getProperty("line.separator");
     private static final Pattern SRG_FINDER             = Pattern.compile("[fF]unc_\\d+_[a-zA-Z_]+|m_\\d+_|[fF]ield_\\d+_[a-zA-Z_]+|f_\\d+_|p_\\w+_\\d+_|p_\\d+_");
     private static final Pattern CONSTRUCTOR_JAVADOC_PATTERN = Pattern.compile("^(?<indent>(?: {3})+|\\t+)(public |private|protected |)(?<generic><[\\w\\W]*>\\s+)?(?<name>[\\w.]+)\\((?<parameters>.*)\\)\\s+(?:throws[\\w.,\\s]+)?\\{");
@@ -46,8 +54,20 @@ public class McpNames {
     private static final Pattern LAMBDA_DECL            = Pattern.compile("\\((?<args>(?:(?:, ){0,1}p_[\\w]+_\\d+_\\b)+)\\) ->");
 
     public static McpNames load(File data) throws IOException {
-        Map<String, String> names = new HashMap<>();
-        Map<String, String> docs = new HashMap<>();
+        return load(data, null);
+    }
+
+    /**
+     * Loads the names and docs of the mappings zip, through an index of them stored in the directory.
+     *
+     * @param indexDir Where the compiled index of every mappings zip is kept, or null to read the CSVs every time
+     */
+    public static McpNames load(File data, @Nullable File indexDir) throws IOException {
+        String hash = DigestCache.hash(data, HashFunction.SHA1);
+        return new McpNames(hash, McpNamesIndex.load(data, hash, indexDir, (names, docs) -> readCsvs(data, names, docs)));
+    }
+
+    private static void readCsvs(File data, Map<String, String> names, Map<String, String> docs) throws IOException {
         try (ZipFile zip = new ZipFile(data)) {
             List<ZipEntry> entries = zip.stream().filter(e -> e.getName().endsWith(".csv")).collect(Collectors.toList());
             for (ZipEntry entry : entries) {
@@ -66,18 +86,16 @@ public class McpNames {
                 }
             }
         }
-
-        return new McpNames(HashFunction.SHA1.hash(data), names, docs);
     }
 
-    private final Map<String, String> names;
-    private final Map<String, String> docs;
+    private final McpNamesIndex.Table names;
+    private final McpNamesIndex.Table docs;
     public final String hash;
 
-    private McpNames(String hash, Map<String, String> names, Map<String, String> docs) {
+    private McpNames(String hash, McpNamesIndex index) {
         this.hash = hash;
-        this.names = names;
-        this.docs = docs;
+        this.names = index.names;
+        this.docs = index.docs;
     }
 
     public String rename(InputStream stream, boolean javadocs) throws IOException {
@@ -117,6 +135,7 @@ public class McpNames {
             }
         }
 
+        StringBuilder buf = new StringBuilder();
         for (String line : input) {
             Matcher m = PACKAGE_DECL.matcher(line);
             if(m.find())
@@ -126,13 +145,116 @@ public class McpNames {
                 if (!injectJavadoc(lines, line, _package, innerClasses))
                     javadocs = false;
             }
-            lines.add(replaceInLine(line, blacklist));
+            lines.add(replaceInLine(line, blacklist, buf));
         }
         return String.join(NEWLINE, lines);
     }
 
     public String rename(String entry) {
-        return names.getOrDefault(entry, entry);
+        String ret = names.get(entry);
+        return ret == null ? entry : ret;
+    }
+
+    /**
+     * Renames every {@code .java} entry of the input zip into the output zip, copying all other entries as-is.
+     * <p>
+     * Files are renamed concurrently on the common fork-join pool, but written in the same order as they appear
+     * in the input, so the output is byte-identical to a sequential run. Set the system property
+     * {@code net.minecraftforge.gradle.parallel_rename} to {@code false} to rename on the calling thread only.
+     *
+     * @param javadocs Tests the entry name to decide if javadocs should be injected into that file
+     * @return the number of renamed source files
+     */
+    public int renameZip(File input, File output, Predicate<String> javadocs, boolean lambdas, Charset sourceFileCharset) throws IOException {
+        return renameZip(input, output, javadocs, lambdas, sourceFileCharset, null, name -> false);
+    }
+
+    /**
+     * Renames the zip like {@link #renameZip(File, File, Predicate, boolean, Charset)}, but copies the entries matching
+     * {@code unchanged} from a previous output of this method with the same names and options, instead of renaming them again.
+     *
+     * @return The number of source files that were renamed, not counting the reused ones
+     */
+    public int renameZip(File input, File output, Predicate<String> javadocs, boolean lambdas, Charset sourceFileCharset,
+                         @Nullable RawZipFile previous, Predicate<String> unchanged) throws IOException {
+        int count = 0;
+        try (RawZipFile zin = new RawZipFile(input);
+             RawZipWriter zout = new RawZipWriter(output)) {
+            List<RawZipFile.Entry> entries = zin.getEntries();
+            Deque<CompletableFuture<byte[]>> pending = new ArrayDeque<>();
+            try {
+                int next = 0;
+                for (RawZipFile.Entry entry : entries) {
+                    if (PARALLEL_RENAME) {
+                        // Keep a bounded window of renames in flight ahead of the entry being written
+                        while (next < entries.size() && pending.size() < RENAME_WINDOW) {
+                            RawZipFile.Entry e = entries.get(next++);
+                            if (findReused(previous, unchanged, e) != null)
+                                pending.add(CompletableFuture.completedFuture(null));
+                            else
+                                pending.add(CompletableFuture.supplyAsync(() -> renameEntry(zin, e, javadocs, lambdas, sourceFileCharset), ForkJoinPool.commonPool()));
+                        }
+                    }
+
+                    RawZipFile.Entry reused = findReused(previous, unchanged, entry);
+                    if (reused != null) {
+                        if (PARALLEL_RENAME)
+                            pending.removeFirst();
+                        zout.copyEntry(previous, reused);
+                        continue;
+                    }
+
+                    byte[] data;
+                    try {
+                        data = PARALLEL_RENAME ? pending.removeFirst().join() : renameEntry(zin, entry, javadocs, lambdas, sourceFileCharset);
+                    } catch (CompletionException | UncheckedIOException e) {
+                        Throwable cause = e.getCause();
+                        if (cause instanceof UncheckedIOException)
+                            cause = cause.getCause();
+                        if (cause instanceof IOException)
+                            throw (IOException)cause;
+                        throw e;
+                    }
+
+                    if (data == null) {
+                        // Not a source file, so there is no need to decompress it
+                        zout.copyEntry(zin, entry, entry.getName(), Utils.ZIPTIME);
+                    } else {
+                        zout.putNextEntry(entry.getName());
+                        zout.write(data);
+                        zout.closeEntry();
+                        count++;
+                    }
+                }
+            } finally {
+                // Renames that haven't started yet are skipped instead of running against the closed zip
+                pending.forEach(f -> f.cancel(false));
+            }
+        }
+        return count;
+    }
+
+    @Nullable
+    private static RawZipFile.Entry findReused(@Nullable RawZipFile previous, Predicate<String> unchanged, RawZipFile.Entry entry) {
+        if (previous == null || !entry.getName().endsWith(".java") || !unchanged.test(entry.getName()))
+            return null;
+        return previous.getEntry(entry.getName());
+    }
+
+    /**
+     * Returns the renamed file encoded in the given charset, or null if the entry is not a source file and should be copied unmodified.
+     */
+    @Nullable
+    private byte[] renameEntry(RawZipFile zip, RawZipFile.Entry entry, Predicate<String> javadocs, boolean lambdas, Charset sourceFileCharset) {
+        String name = entry.getName();
+        if (!name.endsWith(".java"))
+            return null;
+
+        try (InputStream stream = zip.getInputStream(entry)) {
+            return rename(stream, javadocs.test(name), lambdas, sourceFileCharset).getBytes(sourceFileCharset);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 
     /**
@@ -231,13 +353,30 @@ public class McpNames {
         if (cap)
             srg = 'f' + srg.substring(1);
 
-        String ret = names.getOrDefault(srg, srg);
+        String ret = names.get(srg);
+        if (ret == null)
+            ret = srg;
         if (cap)
             ret = ret.substring(0, 1).toUpperCase(Locale.ENGLISH) + ret.substring(1);
         return ret;
     }
 
-    private String replaceInLine(String line, @Nullable Set<String> blacklist) {
+    private String replaceInLine(String line, @Nullable Set<String> blacklist, StringBuilder buf) {
+        switch (SRG_FINDER_MODE) {
+            case "regex":
+                return replaceInLineRegex(line, blacklist);
+            case "verify":
+                String scanned = replaceInLineScanner(line, blacklist, buf);
+                String expected = replaceInLineRegex(line, blacklist);
+                if (!expected.equals(scanned))
+                    throw new IllegalStateException("SRG scanner mismatch:\n  Input:    " + line + "\n  Expected: " + expected + "\n  Actual:   " + scanned);
+                return scanned;
+            default:
+                return replaceInLineScanner(line, blacklist, buf);
+        }
+    }
+
+    private String replaceInLineRegex(String line, @Nullable Set<String> blacklist) {
         StringBuffer buf = new StringBuffer();
         Matcher matcher = SRG_FINDER.matcher(line);
         while (matcher.find()) {
@@ -247,4 +386,123 @@ public class McpNames {
         matcher.appendTail(buf);
         return buf.toString();
     }
+
+    /*
+     * Single pass equivalent of SRG_FINDER. Finds the same tokens as the regex, including ones that start in the middle
+     * of an identifier (such as Mixin accessors), and looks them up directly from the line so nothing is allocated for
+     * tokens that are not renamed. Lines without any tokens are returned as-is.
+     */
+    private String replaceInLineScanner(String line, @Nullable Set<String> blacklist, StringBuilder buf) {
+        buf.setLength(0);
+        int len = line.length();
+        int copied = 0;
+        for (int x = 0; x < len; x++) {
+            int end = findSrg(line, x, len);
+            if (end == -1)
+                continue;
+
+            buf.append(line, copied, x);
+            appendMapped(buf, line, x, end, blacklist);
+            copied = end;
+            x = end - 1;
+        }
+
+        if (copied == 0)
+            return line;
+        buf.append(line, copied, len);
+        return buf.toString();
+    }
+
+    private void appendMapped(StringBuilder buf, String line, int start, int end, @Nullable Set<String> blacklist) {
+        if (blacklist != null && blacklist.contains(line.substring(start, end))) {
+            buf.append(line, start, end);
+            return;
+        }
+
+        boolean cap = line.charAt(start) == 'F';
+        String mapped = names.get(line, start, end, cap);
+        if (mapped == null) {
+            buf.append(line, start, end);
+        } else if (cap && !mapped.isEmpty()) {
+            buf.append(Character.toUpperCase(mapped.charAt(0))).append(mapped, 1, mapped.length());
+        } else {
+            buf.append(mapped);
+        }
+    }
+
+    /**
+     * Matches SRG_FINDER at the given position, trying the alternatives in the same order as the regex.
+     * @return The end of the token, or -1 if there is no token starting at this position
+     */
+    private static int findSrg(String s, int x, int len) {
+        if (x + 1 >= len)
+            return -1;
+
+        switch (s.charAt(x)) {
+            case 'F':
+                return Math.max(findMember(s, x + 1, len, "unc_"), findMember(s, x + 1, len, "ield_"));
+            case 'f':
+                if (s.charAt(x + 1) == '_')
+                    return findNumbered(s, x + 2, len);
+                return Math.max(findMember(s, x + 1, len, "unc_"), findMember(s, x + 1, len, "ield_"));
+            case 'm':
+                return s.charAt(x + 1) == '_' ? findNumbered(s, x + 2, len) : -1;
+            case 'p':
+                if (s.charAt(x + 1) != '_')
+                    return -1;
+                int end = findParam(s, x + 2, len);
+                return end != -1 ? end : findNumbered(s, x + 2, len);
+            default:
+                return -1;
+        }
+    }
+
+    /** Matches {@code prefix\d+_[a-zA-Z_]+} */
+    private static int findMember(String s, int x, int len, String prefix) {
+        if (!s.startsWith(prefix, x))
+            return -1;
+        int end = findNumbered(s, x + prefix.length(), len);
+        if (end == -1)
+            return -1;
+        int start = end;
+        while (end < len && isSrgSuffix(s.charAt(end)))
+            end++;
+        return end == start ? -1 : end;
+    }
+
+    /** Matches {@code \d+_} */
+    private static int findNumbered(String s, int x, int len) {
+        int end = skipDigits(s, x, len);
+        return end != x && end < len && s.charAt(end) == '_' ? end + 1 : -1;
+    }
+
+    /** Matches {@code \w+_\d+_}, where the greedy {@code \w+} means the last possible {@code _\d+_} in the word wins. */
+    private static int findParam(String s, int x, int len) {
+        int word = x;
+        while (word < len && isWord(s.charAt(word)))
+            word++;
+
+        for (int y = word - 1; y > x; y--) {
+            if (s.charAt(y) != '_')
+                continue;
+            int end = findNumbered(s, y + 1, len);
+            if (end != -1)
+                return end;
+        }
+        return -1;
+    }
+
+    private static int skipDigits(String s, int x, int len) {
+        while (x < len && s.charAt(x) >= '0' && s.charAt(x) <= '9')
+            x++;
+        return x;
+    }
+
+    private static boolean isSrgSuffix(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_';
+    }
+
+    private static boolean isWord(char c) {
+        return isSrgSuffix(c) || (c >= '0' && c <= '9');
+    }
 }
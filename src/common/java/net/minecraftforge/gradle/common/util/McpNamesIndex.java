@@ -0,0 +1,246 @@
+/*
+ * Copyright (c) Forge Development LLC and contributors
+ * SPDX-License-Identifier: LGPL-2.1-only
+ */
+
+package net.minecraftforge.gradle.common.util;
+
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.annotation.Nullable;
+
+/**
+ * Compiled form of the names and docs CSVs in a mappings zip.
+ * <p>
+ * The index is stored in the ForgeGradle cache as {@code <sha1 of zip>.idx} and memory mapped on load, so repeated loads don't
+ * parse any CSVs or create any Strings up front. Each table is a string pool of UTF-16 keys and values, sorted by key,
+ * plus an open addressed hash table of entry indexes. Values are decoded lazily and cached, so each name is only
+ * created once no matter how many times it is looked up.
+ * <p>
+ * The header contains the SHA1 of the mappings zip, if that does not match the zip the index is rebuilt.
+ */
+class McpNamesIndex {
+    private static final Logger LOGGER = Logging.getLogger(McpNamesIndex.class);
+    private static final int MAGIC = 0x46474e49; // FGNI
+    private static final int VERSION = 1;
+
+    final Table names;
+    final Table docs;
+
+    private McpNamesIndex(ByteBuffer buf) {
+        this.names = new Table(buf);
+        this.docs = new Table(buf);
+    }
+
+    /**
+     * Loads the index for the given mappings zip, building and saving it if it doesn't exist or is out of date.
+     *
+     * @param dir     Where the index is stored, or null to only build it in memory
+     * @param builder Reads the CSVs of the zip into the names and docs maps, only called when the index needs to be built
+     */
+    static McpNamesIndex load(File data, String sha1, @Nullable File dir, IOBuilder builder) throws IOException {
+        Path index = dir == null ? null : new File(dir, sha1 + ".idx").toPath();
+        if (index != null && Files.isRegularFile(index)) {
+            try (FileChannel channel = FileChannel.open(index, StandardOpenOption.READ)) {
+                ByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                if (readHeader(buf, sha1))
+                    return new McpNamesIndex(buf);
+            } catch (IOException | RuntimeException e) {
+                LOGGER.debug("Rebuilding corrupt names index " + index + " of " + data, e);
+            }
+        }
+
+        byte[] compiled = compile(sha1, builder);
+        if (index != null)
+            save(index, compiled);
+
+        ByteBuffer buf = ByteBuffer.wrap(compiled);
+        readHeader(buf, sha1);
+        return new McpNamesIndex(buf);
+    }
+
+    private static void save(Path index, byte[] compiled) {
+        try {
+            Files.createDirectories(index.getParent());
+            Path tmp = Files.createTempFile(index.getParent(), index.getFileName().toString(), ".tmp");
+            Files.write(tmp, compiled);
+            try {
+                Files.move(tmp, index, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, index, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            // The old index may still be mapped by another build. We still have it in memory, so it's not worth failing over.
+            LOGGER.debug("Failed to save names index " + index, e);
+        }
+    }
+
+    private static boolean readHeader(ByteBuffer buf, String sha1) {
+        if (buf.remaining() < 8 + sha1.length() || buf.getInt() != MAGIC || buf.getInt() != VERSION)
+            return false;
+        byte[] hash = new byte[sha1.length()];
+        buf.get(hash);
+        return sha1.equals(new String(hash, StandardCharsets.US_ASCII));
+    }
+
+    private static byte[] compile(String sha1, IOBuilder builder) throws IOException {
+        Map<String, String> names = new TreeMap<>();
+        Map<String, String> docs = new TreeMap<>();
+        builder.build(names, docs);
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bos)) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.write(sha1.getBytes(StandardCharsets.US_ASCII));
+            writeTable(out, names);
+            writeTable(out, docs);
+        }
+        return bos.toByteArray();
+    }
+
+    private static void writeTable(DataOutputStream out, Map<String, String> entries) throws IOException {
+        int count = entries.size();
+        int slots = 16;
+        while (slots < count * 2)
+            slots <<= 1;
+
+        int[] keyStarts = new int[count + 1];
+        int[] valueStarts = new int[count];
+        int[] table = new int[slots];
+        StringBuilder pool = new StringBuilder();
+
+        int idx = 0;
+        for (Map.Entry<String, String> entry : entries.entrySet()) {
+            String key = entry.getKey();
+            keyStarts[idx] = pool.length();
+            pool.append(key);
+            valueStarts[idx] = pool.length();
+            pool.append(entry.getValue());
+
+            int slot = hash(key, 0, key.length(), false) & (slots - 1);
+            while (table[slot] != 0)
+                slot = (slot + 1) & (slots - 1);
+            table[slot] = idx + 1;
+            idx++;
+        }
+        keyStarts[count] = pool.length();
+
+        out.writeInt(count);
+        out.writeInt(slots);
+        out.writeInt(pool.length());
+        for (int start : keyStarts)
+            out.writeInt(start);
+        for (int start : valueStarts)
+            out.writeInt(start);
+        for (int slot : table)
+            out.writeInt(slot);
+        out.writeChars(pool.toString());
+    }
+
+    private static int hash(CharSequence s, int start, int end, boolean lowerFirst) {
+        int h = 0;
+        for (int x = start; x < end; x++)
+            h = 31 * h + (x == start && lowerFirst ? Character.toLowerCase(s.charAt(x)) : s.charAt(x));
+        return h ^ (h >>> 16);
+    }
+
+    static class Table {
+        private final int count;
+        private final int mask;
+        private final IntBuffer keyStarts;
+        private final IntBuffer valueStarts;
+        private final IntBuffer table;
+        private final CharBuffer pool;
+        private final String[] values;
+
+        private Table(ByteBuffer buf) {
+            this.count = buf.getInt();
+            int slots = buf.getInt();
+            int poolLength = buf.getInt();
+            this.mask = slots - 1;
+            this.keyStarts = slice(buf, (count + 1) * 4).asIntBuffer();
+            this.valueStarts = slice(buf, count * 4).asIntBuffer();
+            this.table = slice(buf, slots * 4).asIntBuffer();
+            this.pool = slice(buf, poolLength * 2).asCharBuffer();
+            this.values = new String[count];
+        }
+
+        private static ByteBuffer slice(ByteBuffer buf, int length) {
+            ByteBuffer ret = buf.slice();
+            ret.limit(length);
+            buf.position(buf.position() + length);
+            return ret;
+        }
+
+        @Nullable
+        String get(String key) {
+            return get(key, 0, key.length(), false);
+        }
+
+        /**
+         * Looks up the key in the given region of the text, without creating a String for the key.
+         * @param lowerFirst Treats the first character of the region as lower case
+         */
+        @Nullable
+        String get(CharSequence text, int start, int end, boolean lowerFirst) {
+            int slot = hash(text, start, end, lowerFirst) & mask;
+            int idx;
+            while ((idx = table.get(slot)) != 0) {
+                if (matches(idx - 1, text, start, end, lowerFirst))
+                    return value(idx - 1);
+                slot = (slot + 1) & mask;
+            }
+            return null;
+        }
+
+        private boolean matches(int idx, CharSequence text, int start, int end, boolean lowerFirst) {
+            int key = keyStarts.get(idx);
+            if (valueStarts.get(idx) - key != end - start)
+                return false;
+            for (int x = start; x < end; x++) {
+                char c = x == start && lowerFirst ? Character.toLowerCase(text.charAt(x)) : text.charAt(x);
+                if (pool.get(key + x - start) != c)
+                    return false;
+            }
+            return true;
+        }
+
+        private String value(int idx) {
+            // Racy, but Strings are immutable so the worst case is decoding the same value twice
+            String ret = values[idx];
+            if (ret == null) {
+                int start = valueStarts.get(idx);
+                char[] chars = new char[keyStarts.get(idx + 1) - start];
+                for (int x = 0; x < chars.length; x++)
+                    chars[x] = pool.get(start + x);
+                ret = new String(chars);
+                values[idx] = ret;
+            }
+            return ret;
+        }
+    }
+
+    @FunctionalInterface
+    interface IOBuilder {
+        void build(Map<String, String> names, Map<String, String> docs) throws IOException;
+    }
+}
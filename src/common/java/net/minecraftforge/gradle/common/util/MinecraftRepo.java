@@ -26,7 +26,6 @@ import org.gradle.api.logging.Logger;
 
 import com.google.common.base.Joiner;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
@@ -73,7 +72,7 @@ public class MinecraftRepo extends BaseRepo {
 
     public static void attach(Project project) {
         MinecraftRepo instance = getInstance(project);
-        GradleRepositoryAdapter.add(project.getRepositories(), "MINECRAFT_DYNAMIC", instance.getCacheRoot(), instance.repo);
+        MavenArtifactDownloader.hideFromGradle(GradleRepositoryAdapter.add(project.getRepositories(), "MINECRAFT_DYNAMIC", instance.getCacheRoot(), instance.repo));
     }
 
     public static ArtifactProvider<ArtifactIdentifier> create(Project project) {
@@ -276,8 +275,8 @@ public class MinecraftRepo extends BaseRepo {
             throw new IllegalStateException(version + ".json missing download for " + key);
 
         Download dl = json.downloads.get(key);
-        if (!target.exists() || !HashFunction.SHA1.hash(target).equals(dl.sha1)) {
-            FileUtils.copyURLToFile(dl.url, target);
+        if (!target.exists() || !DigestCache.hash(target, HashFunction.SHA1).equals(dl.sha1)) {
+            DownloadUtils.download(dl.url, target, HashFunction.SHA1, dl.sha1);
             Utils.updateHash(target, HashFunction.SHA1);
         }
         return target;
@@ -321,20 +320,21 @@ public class MinecraftRepo extends BaseRepo {
     }
 
     private static void splitJar(File raw, File mappings, File output, boolean slim, boolean stable) throws IOException {
-        try (FileInputStream input = new FileInputStream(mappings)) {
-            splitJar(raw, input, output, slim, stable);
-        }
+        splitJar(raw, MappingCache.getOriginalClasses(mappings), output, slim, stable);
     }
 
     public static void splitJar(File raw, InputStream mappings, File output, boolean slim, boolean stable) throws IOException {
+        Set<String> whitelist = IMappingFile.load(mappings).getClasses().stream()
+                .map(IMappingFile.IClass::getOriginal)
+                .collect(Collectors.toSet());
+        splitJar(raw, whitelist, output, slim, stable);
+    }
+
+    private static void splitJar(File raw, Set<String> whitelist, File output, boolean slim, boolean stable) throws IOException {
         try (ZipFile zin = new ZipFile(raw);
              FileOutputStream fos = new FileOutputStream(output);
              ZipOutputStream out = new ZipOutputStream(fos)) {
 
-            Set<String> whitelist = IMappingFile.load(mappings).getClasses().stream()
-                    .map(IMappingFile.IClass::getOriginal)
-                    .collect(Collectors.toSet());
-
             for (Enumeration<? extends ZipEntry> entries = zin.entries(); entries.hasMoreElements();) {
                 ZipEntry entry = entries.nextElement();
                 String name = entry.getName();
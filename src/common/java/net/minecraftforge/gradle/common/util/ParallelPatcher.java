@@ -0,0 +1,335 @@
+/*
+ * Copyright (c) Forge Development LLC and contributors
+ * SPDX-License-Identifier: LGPL-2.1-only
+ */
+
+package net.minecraftforge.gradle.common.util;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+
+import codechicken.diffpatch.cli.CliOperation;
+import codechicken.diffpatch.cli.PatchOperation;
+import codechicken.diffpatch.util.archiver.ArchiveFormat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.annotation.Nullable;
+
+/**
+ * Applies a set of per-file patches with several DiffPatch operations at once.
+ * <p>
+ * The patches are split by target file into shards, balanced by patch size. Each shard is applied on the common
+ * fork-join pool to a small in-memory zip holding only the files it touches. The results are then merged back into
+ * the base zip by name, and every file no patch touches is copied over without being decompressed. The output and
+ * rejects do not depend on how the work was split or scheduled, and each shard's log is written in one piece.
+ * <p>
+ * Only zip bases, outputs and rejects are supported, see {@link #canApply(File, File, File)}. Set the system property
+ * {@code net.minecraftforge.gradle.parallel_patches} to {@code false} to always use a single operation.
+ */
+public class ParallelPatcher {
+    private static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("net.minecraftforge.gradle.parallel_patches", "true"));
+    private static final String PATCH_EXT = ".patch";
+
+    /**
+     * Checks if the given files can be patched in parallel, callers should use a single {@link PatchOperation} otherwise.
+     */
+    public static boolean canApply(File base, File output, @Nullable File rejects) {
+        return ENABLED && ForkJoinPool.getCommonPoolParallelism() > 1 && base.isFile() && isZip(output) && (rejects == null || isZip(rejects));
+    }
+
+    private static boolean isZip(File file) {
+        return ArchiveFormat.findFormat(file.toPath().getFileName()) == ArchiveFormat.ZIP;
+    }
+
+    /**
+     * Applies every {@code .patch} file under the prefix in the patches directory or zip to the base zip, without a summary.
+     */
+    public static int apply(File base, Path patches, String patchesPrefix, File output, @Nullable File rejects,
+                            OutputStream log, Consumer<PatchOperation.Builder> options) throws IOException {
+        return apply(base, patches, patchesPrefix, output, rejects, log, false, options);
+    }
+
+    /**
+     * Applies every {@code .patch} file under the prefix in the patches directory or zip to the base zip.
+     *
+     * @param log     Receives the log of each shard in turn, once they are all finished
+     * @param summary Print one summary of all shards to the log at the end. Summaries enabled through the options are ignored.
+     * @param options Sets up everything but the paths and log of each operation, such as the mode, fuzz and patch prefixes
+     * @return The highest exit code of any shard: 0 if everything applied, 1 if some patches failed
+     */
+    public static int apply(File base, Path patches, String patchesPrefix, File output, @Nullable File rejects,
+                            OutputStream log, boolean summary, Consumer<PatchOperation.Builder> options) throws IOException {
+        Map<String, byte[]> patchFiles = readPatches(patches, patchesPrefix);
+        List<List<String>> shards = partition(patchFiles, ForkJoinPool.getCommonPoolParallelism());
+
+        File parent = output.getAbsoluteFile().getParentFile();
+        if (!parent.exists() && !parent.mkdirs())
+            throw new IOException("Could not create directory: " + parent);
+        Path temp = Files.createTempDirectory(parent.toPath(), "patches");
+
+        try (RawZipFile baseZip = new RawZipFile(base)) {
+            List<CompletableFuture<Shard>> futures = new ArrayList<>();
+            for (int x = 0; x < shards.size(); x++) {
+                List<String> targets = shards.get(x);
+                Path dir = temp.resolve(Integer.toString(x));
+                futures.add(CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return applyShard(baseZip, patchFiles, targets, dir, rejects != null, options);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }, ForkJoinPool.commonPool()));
+            }
+
+            // Which shard owns each target, so patched files can be looked up while walking the base
+            Map<String, Shard> owners = new TreeMap<>();
+            List<Shard> results = new ArrayList<>();
+            for (CompletableFuture<Shard> future : futures) {
+                Shard shard = join(future);
+                results.add(shard);
+                shard.targets.forEach(target -> owners.put(target, shard));
+            }
+
+            int exit = 0;
+            for (Shard shard : results) {
+                log.write(shard.log);
+                exit = Math.max(exit, shard.exit);
+            }
+            log.flush();
+
+            writeOutput(baseZip, owners, output);
+            if (rejects != null)
+                writeRejects(results, rejects);
+
+            if (summary) {
+                // Not closed, that would close the log
+                PrintStream out = new PrintStream(log, true);
+                mergeSummaries(results).print(out, false);
+                out.flush();
+            }
+
+            return exit;
+        } finally {
+            FileUtils.deleteDirectory(temp.toFile());
+        }
+    }
+
+    private static Map<String, byte[]> readPatches(Path patches, String prefix) throws IOException {
+        Map<String, byte[]> ret = new TreeMap<>();
+        if (Files.isDirectory(patches)) {
+            Path root = prefix.isEmpty() ? patches : patches.resolve(prefix);
+            if (!Files.isDirectory(root))
+                return ret;
+            try (Stream<Path> walk = Files.walk(root)) {
+                for (Path path : walk.filter(Files::isRegularFile).collect(Collectors.toList())) {
+                    String name = root.relativize(path).toString().replace('\\', '/');
+                    if (name.endsWith(PATCH_EXT))
+                        ret.put(name.substring(0, name.length() - PATCH_EXT.length()), Files.readAllBytes(path));
+                }
+            }
+        } else {
+            String start = prefix.isEmpty() || prefix.endsWith("/") ? prefix : prefix + '/';
+            try (RawZipFile zip = new RawZipFile(patches.toFile())) {
+                for (RawZipFile.Entry entry : zip.getEntries()) {
+                    String name = entry.getName();
+                    if (entry.isDirectory() || !name.startsWith(start) || !name.endsWith(PATCH_EXT))
+                        continue;
+                    try (InputStream in = zip.getInputStream(entry)) {
+                        ret.put(name.substring(start.length(), name.length() - PATCH_EXT.length()), IOUtils.toByteArray(in));
+                    }
+                }
+            }
+        }
+        return ret;
+    }
+
+    /*
+     * Biggest patches first, each into the shard with the least patch data so far. Only uses names and sizes, so it is stable.
+     */
+    private static List<List<String>> partition(Map<String, byte[]> patches, int count) {
+        int shards = Math.max(1, Math.min(count, patches.size()));
+        List<List<String>> ret = new ArrayList<>();
+        long[] sizes = new long[shards];
+        for (int x = 0; x < shards; x++)
+            ret.add(new ArrayList<>());
+
+        List<String> targets = new ArrayList<>(patches.keySet());
+        targets.sort(Comparator.<String>comparingInt(target -> patches.get(target).length).reversed().thenComparing(Comparator.naturalOrder()));
+        for (String target : targets) {
+            int smallest = 0;
+            for (int x = 1; x < shards; x++) {
+                if (sizes[x] < sizes[smallest])
+                    smallest = x;
+            }
+            ret.get(smallest).add(target);
+            sizes[smallest] += patches.get(target).length;
+        }
+        return ret;
+    }
+
+    private static Shard applyShard(RawZipFile baseZip, Map<String, byte[]> patchFiles, List<String> targets, Path dir,
+                                    boolean rejects, Consumer<PatchOperation.Builder> options) throws IOException {
+        // Only the files this shard patches, so DiffPatch doesn't read and rewrite the whole base
+        ByteArrayOutputStream base = new ByteArrayOutputStream();
+        try (RawZipWriter zip = new RawZipWriter(base)) {
+            for (String target : targets) {
+                RawZipFile.Entry entry = baseZip.getEntry(target);
+                if (entry != null)
+                    zip.copyEntry(baseZip, entry);
+            }
+        }
+
+        Path patches = dir.resolve("patches");
+        for (String target : targets) {
+            Path patch = patches.resolve(target + PATCH_EXT);
+            Files.createDirectories(patch.getParent());
+            Files.write(patch, patchFiles.get(target));
+        }
+
+        ByteArrayOutputStream log = new ByteArrayOutputStream();
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        Path rejectsPath = dir.resolve("rejects.zip");
+
+        PatchOperation.Builder builder = PatchOperation.builder();
+        options.accept(builder);
+        // Each shard only knows its own part, apply prints the total
+        builder.summary(false)
+                .logTo(log)
+                .basePath(base.toByteArray(), ArchiveFormat.ZIP)
+                .patchesPath(patches)
+                .patchesPrefix("")
+                .outputPath(output, ArchiveFormat.ZIP);
+        if (rejects)
+            builder.rejectsPath(rejectsPath, ArchiveFormat.ZIP);
+
+        CliOperation.Result<PatchOperation.PatchesSummary> result = builder.build().operate();
+        return new Shard(targets, result.exit, result.summary, new RawZipFile(output.toByteArray()), rejects && Files.exists(rejectsPath) ? rejectsPath.toFile() : null, log.toByteArray());
+    }
+
+    private static void writeOutput(RawZipFile baseZip, Map<String, Shard> owners, File output) throws IOException {
+        try (RawZipWriter zout = new RawZipWriter(output)) {
+            for (RawZipFile.Entry entry : baseZip.getEntries()) {
+                Shard owner = owners.get(entry.getName());
+                if (owner == null) {
+                    zout.copyEntry(baseZip, entry);
+                } else {
+                    // Patched, or deleted if the shard's output doesn't have it
+                    RawZipFile.Entry result = owner.output.getEntry(entry.getName());
+                    if (result != null)
+                        zout.copyEntry(owner.output, result);
+                }
+            }
+
+            // Files created by patches, in name order
+            for (Map.Entry<String, Shard> kv : owners.entrySet()) {
+                if (baseZip.getEntry(kv.getKey()) != null)
+                    continue;
+                RawZipFile.Entry result = kv.getValue().output.getEntry(kv.getKey());
+                if (result != null)
+                    zout.copyEntry(kv.getValue().output, result);
+            }
+        }
+    }
+
+    private static void writeRejects(List<Shard> shards, File rejects) throws IOException {
+        List<RawZipFile> zips = new ArrayList<>();
+        try {
+            // Sorted by name, no matter which shard rejected what
+            Map<String, RawZipFile> entries = new TreeMap<>();
+            for (Shard shard : shards) {
+                if (shard.rejects == null)
+                    continue;
+                RawZipFile zip = new RawZipFile(shard.rejects);
+                zips.add(zip);
+                for (RawZipFile.Entry entry : zip.getEntries()) {
+                    if (!entry.isDirectory())
+                        entries.putIfAbsent(entry.getName(), zip);
+                }
+            }
+
+            if (entries.isEmpty()) {
+                if (rejects.exists() && !rejects.delete())
+                    throw new IOException("Could not delete old rejects: " + rejects);
+                return;
+            }
+
+            try (RawZipWriter zout = new RawZipWriter(rejects)) {
+                for (Map.Entry<String, RawZipFile> kv : entries.entrySet())
+                    zout.copyEntry(kv.getValue(), kv.getValue().getEntry(kv.getKey()));
+            }
+        } finally {
+            for (RawZipFile zip : zips)
+                zip.close();
+        }
+    }
+
+    private static PatchOperation.PatchesSummary mergeSummaries(List<Shard> shards) {
+        PatchOperation.PatchesSummary ret = new PatchOperation.PatchesSummary();
+        for (Shard shard : shards) {
+            PatchOperation.PatchesSummary summary = shard.summary;
+            if (summary == null)
+                continue;
+            ret.unchangedFiles += summary.unchangedFiles;
+            ret.changedFiles += summary.changedFiles;
+            ret.missingFiles += summary.missingFiles;
+            ret.failedFiles += summary.failedFiles;
+            ret.exactMatches += summary.exactMatches;
+            ret.accessMatches += summary.accessMatches;
+            ret.offsetMatches += summary.offsetMatches;
+            ret.fuzzyMatches += summary.fuzzyMatches;
+            ret.failedMatches += summary.failedMatches;
+        }
+        return ret;
+    }
+
+    private static Shard join(CompletableFuture<Shard> future) throws IOException {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof UncheckedIOException)
+                throw ((UncheckedIOException)cause).getCause();
+            throw e;
+        }
+    }
+
+    private static class Shard {
+        private final List<String> targets;
+        private final int exit;
+        @Nullable
+        private final PatchOperation.PatchesSummary summary;
+        private final RawZipFile output; // In memory, nothing to close
+        @Nullable
+        private final File rejects;
+        private final byte[] log;
+
+        private Shard(List<String> targets, int exit, @Nullable PatchOperation.PatchesSummary summary, RawZipFile output, @Nullable File rejects, byte[] log) {
+            this.targets = targets;
+            this.exit = exit;
+            this.summary = summary;
+            this.output = output;
+            this.rejects = rejects;
+            this.log = log;
+        }
+    }
+}
@@ -0,0 +1,355 @@
+/*
+ * Copyright (c) Forge Development LLC and contributors
+ * SPDX-License-Identifier: LGPL-2.1-only
+ */
+
+package net.minecraftforge.gradle.common.util;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+
+import javax.annotation.Nullable;
+
+/**
+ * Reads a zip file through its central directory, giving access to the still compressed data of each entry.
+ * <p>
+ * Together with {@link RawZipWriter} this allows copying entries from one zip to another without inflating and
+ * deflating them again. Entries can still be read normally through {@link #getInputStream(Entry)} when their content
+ * is needed. Reads are positional, so a single instance can be read from multiple threads.
+ */
+public class RawZipFile implements Closeable {
+    static final int LOCAL_HEADER = 0x04034b50;
+    static final int CENTRAL_HEADER = 0x02014b50;
+    static final int END_HEADER = 0x06054b50;
+    static final int ZIP64_END_HEADER = 0x06064b50;
+    static final int ZIP64_LOCATOR = 0x07064b50;
+    private static final int END_SIZE = 22;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final String name;
+    @Nullable
+    private final FileChannel channel;
+    @Nullable
+    private final byte[] data;
+    private final long size;
+    private final List<Entry> entries;
+    private final Map<String, Entry> byName;
+
+    public RawZipFile(File file) throws IOException {
+        this.name = file.getAbsolutePath();
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        this.data = null;
+        this.size = channel.size();
+        try {
+            this.entries = readCentralDirectory();
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        this.byName = index(entries);
+    }
+
+    public RawZipFile(byte[] data) throws IOException {
+        this.name = "<memory>";
+        this.channel = null;
+        this.data = data;
+        this.size = data.length;
+        this.entries = readCentralDirectory();
+        this.byName = index(entries);
+    }
+
+    private static Map<String, Entry> index(List<Entry> entries) {
+        Map<String, Entry> ret = new HashMap<>(entries.size() * 2);
+        for (Entry entry : entries)
+            ret.putIfAbsent(entry.name, entry);
+        return ret;
+    }
+
+    /**
+     * @return All entries, in the order of the central directory.
+     */
+    public List<Entry> getEntries() {
+        return entries;
+    }
+
+    @Nullable
+    public Entry getEntry(String name) {
+        return byName.get(name);
+    }
+
+    /**
+     * @return A stream of the uncompressed content of the entry.
+     */
+    public InputStream getInputStream(Entry entry) throws IOException {
+        InputStream raw = new RawInputStream(getDataOffset(entry), entry.compressedSize);
+        if (entry.method == ZipEntry.STORED)
+            return raw;
+        if (entry.method != ZipEntry.DEFLATED)
+            throw new ZipException("Unsupported compression method " + entry.method + " for " + entry.name + " in " + name);
+        return new EntryInflaterInputStream(raw);
+    }
+
+    /**
+     * Writes the compressed data of the entry to the output, as is.
+     */
+    void copyRaw(Entry entry, OutputStream out) throws IOException {
+        long position = getDataOffset(entry);
+        long remaining = entry.compressedSize;
+        byte[] buf = new byte[(int)Math.min(BUFFER_SIZE, Math.max(remaining, 1))];
+        while (remaining > 0) {
+            int len = (int)Math.min(buf.length, remaining);
+            read(ByteBuffer.wrap(buf, 0, len), position);
+            out.write(buf, 0, len);
+            position += len;
+            remaining -= len;
+        }
+    }
+
+    private long getDataOffset(Entry entry) throws IOException {
+        if (entry.dataOffset < 0) {
+            ByteBuffer header = ByteBuffer.allocate(30).order(ByteOrder.LITTLE_ENDIAN);
+            read(header, entry.headerOffset);
+            if (header.getInt(0) != LOCAL_HEADER)
+                throw new ZipException("Invalid local header for " + entry.name + " in " + name);
+            entry.dataOffset = entry.headerOffset + 30 + (header.getShort(26) & 0xFFFF) + (header.getShort(28) & 0xFFFF);
+        }
+        return entry.dataOffset;
+    }
+
+    private List<Entry> readCentralDirectory() throws IOException {
+        // The end record is at the very end, followed only by a comment of up to 64k
+        int tailLength = (int)Math.min(size, END_SIZE + 0xFFFF);
+        ByteBuffer tail = ByteBuffer.allocate(tailLength).order(ByteOrder.LITTLE_ENDIAN);
+        read(tail, size - tailLength);
+
+        int end = -1;
+        for (int x = tailLength - END_SIZE; x >= 0; x--) {
+            if (tail.getInt(x) == END_HEADER) {
+                end = x;
+                break;
+            }
+        }
+        if (end == -1)
+            throw new ZipException("Could not find end of central directory in " + name);
+
+        long count = tail.getShort(end + 10) & 0xFFFF;
+        long cdSize = tail.getInt(end + 12) & 0xFFFFFFFFL;
+        long cdOffset = tail.getInt(end + 16) & 0xFFFFFFFFL;
+
+        if (end >= 20 && tail.getInt(end - 20) == ZIP64_LOCATOR) {
+            ByteBuffer zip64 = ByteBuffer.allocate(56).order(ByteOrder.LITTLE_ENDIAN);
+            read(zip64, tail.getLong(end - 20 + 8));
+            if (zip64.getInt(0) != ZIP64_END_HEADER)
+                throw new ZipException("Invalid zip64 end of central directory in " + name);
+            count = zip64.getLong(32);
+            cdSize = zip64.getLong(40);
+            cdOffset = zip64.getLong(48);
+        }
+
+        if (cdSize > Integer.MAX_VALUE || cdOffset + cdSize > size)
+            throw new ZipException("Invalid central directory in " + name);
+
+        ByteBuffer cd = ByteBuffer.allocate((int)cdSize).order(ByteOrder.LITTLE_ENDIAN);
+        read(cd, cdOffset);
+
+        List<Entry> ret = new ArrayList<>((int)Math.min(count, 0xFFFFF));
+        int pos = 0;
+        while (pos + 46 <= cdSize && cd.getInt(pos) == CENTRAL_HEADER) {
+            int versionNeeded = cd.getShort(pos + 6) & 0xFFFF;
+            int flags = cd.getShort(pos + 8) & 0xFFFF;
+            int method = cd.getShort(pos + 10) & 0xFFFF;
+            long dosTime = cd.getInt(pos + 12) & 0xFFFFFFFFL;
+            long crc = cd.getInt(pos + 16) & 0xFFFFFFFFL;
+            long compressedSize = cd.getInt(pos + 20) & 0xFFFFFFFFL;
+            long uncompressedSize = cd.getInt(pos + 24) & 0xFFFFFFFFL;
+            int nameLength = cd.getShort(pos + 28) & 0xFFFF;
+            int extraLength = cd.getShort(pos + 30) & 0xFFFF;
+            int commentLength = cd.getShort(pos + 32) & 0xFFFF;
+            long headerOffset = cd.getInt(pos + 42) & 0xFFFFFFFFL;
+
+            String entryName = new String(cd.array(), pos + 46, nameLength, StandardCharsets.UTF_8);
+
+            // Zip64 extra field, only contains the values that overflowed, in this order
+            int extra = pos + 46 + nameLength;
+            int extraEnd = extra + extraLength;
+            while (extra + 4 <= extraEnd) {
+                int id = cd.getShort(extra) & 0xFFFF;
+                int length = cd.getShort(extra + 2) & 0xFFFF;
+                if (id == 0x0001) {
+                    int value = extra + 4;
+                    if (uncompressedSize == 0xFFFFFFFFL) {
+                        uncompressedSize = cd.getLong(value);
+                        value += 8;
+                    }
+                    if (compressedSize == 0xFFFFFFFFL) {
+                        compressedSize = cd.getLong(value);
+                        value += 8;
+                    }
+                    if (headerOffset == 0xFFFFFFFFL)
+                        headerOffset = cd.getLong(value);
+                }
+                extra += 4 + length;
+            }
+
+            if ((flags & 1) != 0)
+                throw new ZipException("Encrypted entries are not supported: " + entryName + " in " + name);
+
+            ret.add(new Entry(entryName, versionNeeded, flags, method, dosTime, crc, compressedSize, uncompressedSize, headerOffset));
+            pos = extraEnd + commentLength;
+        }
+
+        return Collections.unmodifiableList(ret);
+    }
+
+    private void read(ByteBuffer buf, long position) throws IOException {
+        if (data != null) {
+            if (position < 0 || position + buf.remaining() > data.length)
+                throw new EOFException("Unexpected end of " + name);
+            buf.put(data, (int)position, buf.remaining());
+        } else {
+            while (buf.hasRemaining()) {
+                int read = channel.read(buf, position);
+                if (read < 0)
+                    throw new EOFException("Unexpected end of " + name);
+                position += read;
+            }
+        }
+        buf.flip();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel != null)
+            channel.close();
+    }
+
+    public static class Entry {
+        private final String name;
+        final int versionNeeded;
+        final int flags;
+        final int method;
+        final long dosTime;
+        final long crc;
+        final long compressedSize;
+        final long size;
+        private final long headerOffset;
+        private volatile long dataOffset = -1;
+
+        private Entry(String name, int versionNeeded, int flags, int method, long dosTime, long crc, long compressedSize, long size, long headerOffset) {
+            this.name = name;
+            this.versionNeeded = versionNeeded;
+            this.flags = flags;
+            this.method = method;
+            this.dosTime = dosTime;
+            this.crc = crc;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.headerOffset = headerOffset;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public boolean isDirectory() {
+            return name.endsWith("/");
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public long getCompressedSize() {
+            return compressedSize;
+        }
+
+        public long getCrc() {
+            return crc;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    private class RawInputStream extends InputStream {
+        private long position;
+        private long remaining;
+
+        private RawInputStream(long position, long length) {
+            this.position = position;
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) == -1 ? -1 : b[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining <= 0)
+                return -1;
+            len = (int)Math.min(len, remaining);
+            RawZipFile.this.read(ByteBuffer.wrap(b, off, len), position);
+            position += len;
+            remaining -= len;
+            return len;
+        }
+
+        @Override
+        public int available() {
+            return (int)Math.min(remaining, Integer.MAX_VALUE);
+        }
+    }
+
+    /*
+     * Raw deflate data needs an extra dummy byte at the end for the Inflater to finish, the same as ZipFile does.
+     */
+    private static class EntryInflaterInputStream extends InflaterInputStream {
+        private boolean eof;
+
+        private EntryInflaterInputStream(InputStream in) {
+            super(in, new Inflater(true), 8192);
+        }
+
+        @Override
+        protected void fill() throws IOException {
+            if (eof)
+                throw new EOFException("Unexpected end of ZLIB input stream");
+            len = in.read(buf, 0, buf.length);
+            if (len == -1) {
+                buf[0] = 0;
+                len = 1;
+                eof = true;
+            }
+            inf.setInput(buf, 0, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            super.close();
+            inf.end();
+        }
+    }
+}
@@ -0,0 +1,393 @@
+/*
+ * Copyright (c) Forge Development LLC and contributors
+ * SPDX-License-Identifier: LGPL-2.1-only
+ */
+
+package net.minecraftforge.gradle.common.util;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+
+import javax.annotation.Nullable;
+
+/**
+ * Writes a zip file, copying entries from a {@link RawZipFile} without decompressing them.
+ * <p>
+ * Copied entries keep their compressed data, CRC and sizes byte for byte, only the headers are written fresh. New or
+ * modified entries are written like {@link java.util.zip.ZipOutputStream}: {@link #putNextEntry(String)}, write the
+ * content to this stream, then {@link #closeEntry()}. Times are converted in GMT, the same as
+ * {@link Utils#getStableEntry(String, long)}, so the output does not depend on the local time zone.
+ * <p>
+ * New entries are buffered until {@link #closeEntry()} and then deflated on the common fork-join pool, while the writer
+ * moves on to the next entry. Entries are still written in the order they were added, and each one is deflated on its
+ * own with the same settings, so the output is byte-identical no matter how many threads did the work. Set the system
+ * property {@code net.minecraftforge.gradle.parallel_zip} to {@code false} to deflate on the calling thread only.
+ */
+public class RawZipWriter extends OutputStream {
+    private static final boolean PARALLEL = Boolean.parseBoolean(System.getProperty("net.minecraftforge.gradle.parallel_zip", "true"));
+    private static final int WINDOW = 512; // Max number of entries waiting to be written
+    private static final long WINDOW_BYTES = 64L * 1024 * 1024; // Max uncompressed size of the entries waiting to be written
+    private static final int FLAG_UTF8 = 1 << 11;
+    private static final long DOSTIME_1980 = (1 << 21) | (1 << 16);
+
+    private final OutputStream out;
+    private final ByteArrayOutputStream central = new ByteArrayOutputStream();
+    private final Set<String> names = new HashSet<>();
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(64 * 1024);
+    private final byte[] single = new byte[1];
+    private final Deque<Pending> queue = new ArrayDeque<>();
+    private long queuedBytes;
+    private long written;
+    private long count;
+    @Nullable
+    private Pending current;
+    private boolean closed;
+
+    public RawZipWriter(File file) throws IOException {
+        this(new BufferedOutputStream(new FileOutputStream(file), 64 * 1024));
+    }
+
+    public RawZipWriter(OutputStream out) {
+        this.out = out;
+    }
+
+    /**
+     * Starts a new deflated entry with the stable {@link Utils#ZIPTIME} time.
+     */
+    public void putNextEntry(String name) throws IOException {
+        putNextEntry(name, Utils.ZIPTIME);
+    }
+
+    public void putNextEntry(String name, long time) throws IOException {
+        closeEntry();
+        current = new Pending(checkName(name), utf8Flag(name), toDosTime(time));
+        buffer.reset();
+    }
+
+    public void closeEntry() throws IOException {
+        Pending entry = current;
+        if (entry == null)
+            return;
+        current = null;
+
+        byte[] data = buffer.toByteArray();
+        checkSize(data.length);
+        if (PARALLEL && data.length > 0)
+            entry.data = CompletableFuture.supplyAsync(() -> deflate(data), ForkJoinPool.commonPool());
+        else
+            entry.data = CompletableFuture.completedFuture(deflate(data));
+        enqueue(entry, data.length);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        single[0] = (byte)b;
+        write(single, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (current == null)
+            throw new ZipException("No current zip entry");
+        buffer.write(b, off, len);
+    }
+
+    private static Compressed deflate(byte[] data) {
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, data.length);
+
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            byte[] ret = new byte[Math.max(64, data.length / 2)];
+            int len = 0;
+            while (!deflater.finished()) {
+                if (len == ret.length)
+                    ret = Arrays.copyOf(ret, ret.length * 2);
+                len += deflater.deflate(ret, len, ret.length - len);
+            }
+            return new Compressed(ZipEntry.DEFLATED, crc.getValue(), data.length, ret, len);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Copies the entry, keeping its name and time.
+     */
+    public void copyEntry(RawZipFile zip, RawZipFile.Entry entry) throws IOException {
+        copyRaw(zip, entry, entry.getName(), entry.dosTime);
+    }
+
+    /**
+     * Copies the entry under a new name, keeping its time.
+     */
+    public void copyEntry(RawZipFile zip, RawZipFile.Entry entry, String name) throws IOException {
+        copyRaw(zip, entry, name, entry.dosTime);
+    }
+
+    /**
+     * Copies the entry under a new name and time.
+     */
+    public void copyEntry(RawZipFile zip, RawZipFile.Entry entry, String name, long time) throws IOException {
+        copyRaw(zip, entry, name, toDosTime(time));
+    }
+
+    private void copyRaw(RawZipFile zip, RawZipFile.Entry entry, String name, long dosTime) throws IOException {
+        closeEntry();
+        // Keep the deflate option bits, but the sizes are known so no data descriptor is needed
+        Pending pending = new Pending(checkName(name), (entry.flags & 0x6) | utf8Flag(name), dosTime);
+        checkSize(entry.compressedSize);
+        checkSize(entry.size);
+
+        if (queue.isEmpty()) {
+            // Nothing to wait for, so stream it straight from the source
+            long offset = written;
+            writeLocalHeader(pending, entry.method, entry.crc, entry.compressedSize, entry.size);
+            zip.copyRaw(entry, out);
+            written += entry.compressedSize;
+            writeCentralHeader(pending, entry.method, entry.crc, entry.compressedSize, entry.size, offset);
+        } else {
+            // The source may be closed before the queue is drained, so take a copy of the compressed data
+            ByteArrayOutputStream data = new ByteArrayOutputStream((int)entry.compressedSize);
+            zip.copyRaw(entry, data);
+            pending.data = CompletableFuture.completedFuture(new Compressed(entry.method, entry.crc, entry.size, data.toByteArray(), data.size()));
+            enqueue(pending, entry.compressedSize);
+        }
+    }
+
+    private void enqueue(Pending entry, long size) throws IOException {
+        entry.size = size;
+        queue.add(entry);
+        queuedBytes += size;
+        // Write everything that is already done, and wait on the oldest entry once too much is held in memory
+        while (!queue.isEmpty() && (queue.size() > WINDOW || queuedBytes > WINDOW_BYTES || queue.peekFirst().data.isDone()))
+            writeQueued(queue.removeFirst());
+    }
+
+    private void writeQueued(Pending entry) throws IOException {
+        queuedBytes -= entry.size;
+        Compressed data;
+        try {
+            data = entry.data.join();
+        } catch (CompletionException e) {
+            throw new IOException("Could not compress " + new String(entry.name, StandardCharsets.UTF_8), e.getCause());
+        }
+
+        long offset = written;
+        writeLocalHeader(entry, data.method, data.crc, data.length, data.size);
+        out.write(data.data, 0, data.length);
+        written += data.length;
+        writeCentralHeader(entry, data.method, data.crc, data.length, data.size, offset);
+    }
+
+    private byte[] checkName(String name) throws IOException {
+        if (closed)
+            throw new IOException("Stream closed");
+        if (!names.add(name))
+            throw new ZipException("duplicate entry: " + name);
+        byte[] ret = name.getBytes(StandardCharsets.UTF_8);
+        if (ret.length > 0xFFFF)
+            throw new ZipException("Entry name too long: " + name);
+        return ret;
+    }
+
+    private static int utf8Flag(String name) {
+        for (int x = 0; x < name.length(); x++) {
+            if (name.charAt(x) >= 0x80)
+                return FLAG_UTF8;
+        }
+        return 0;
+    }
+
+    private static long checkSize(long size) throws ZipException {
+        if (size >= 0xFFFFFFFFL)
+            throw new ZipException("Entries larger than 4GB are not supported");
+        return size;
+    }
+
+    /**
+     * Converts a Java time to MS-DOS date and time in GMT, clamped to the range DOS times can represent.
+     */
+    static long toDosTime(long time) {
+        LocalDateTime date = LocalDateTime.ofEpochSecond(Math.floorDiv(time, 1000L), 0, ZoneOffset.UTC);
+        if (date.getYear() < 1980)
+            return DOSTIME_1980;
+        if (date.getYear() > 2107)
+            date = LocalDateTime.of(2107, 12, 31, 23, 59, 58);
+        return ((date.getYear() - 1980L) << 25) | ((long)date.getMonthValue() << 21) | ((long)date.getDayOfMonth() << 16)
+                | ((long)date.getHour() << 11) | ((long)date.getMinute() << 5) | (date.getSecond() >> 1);
+    }
+
+    private static int version(int method) {
+        return method == ZipEntry.STORED ? 10 : 20;
+    }
+
+    private void writeLocalHeader(Pending entry, int method, long crc, long compressed, long size) throws IOException {
+        if (written >= 0xFFFFFFFFL)
+            throw new ZipException("Zip files larger than 4GB are not supported");
+        writeInt(RawZipFile.LOCAL_HEADER);
+        writeShort(version(method));
+        writeShort(entry.flags);
+        writeShort(method);
+        writeInt(entry.dosTime);
+        writeInt(crc);
+        writeInt(compressed);
+        writeInt(size);
+        writeShort(entry.name.length);
+        writeShort(0);
+        out.write(entry.name);
+        written += entry.name.length;
+    }
+
+    private void writeCentralHeader(Pending entry, int method, long crc, long compressed, long size, long offset) {
+        writeInt(central, RawZipFile.CENTRAL_HEADER);
+        writeShort(central, 20);
+        writeShort(central, version(method));
+        writeShort(central, entry.flags);
+        writeShort(central, method);
+        writeInt(central, entry.dosTime);
+        writeInt(central, crc);
+        writeInt(central, compressed);
+        writeInt(central, size);
+        writeShort(central, entry.name.length);
+        writeShort(central, 0); // Extra
+        writeShort(central, 0); // Comment
+        writeShort(central, 0); // Disk
+        writeShort(central, 0); // Internal attributes
+        writeInt(central, 0);   // External attributes
+        writeInt(central, offset);
+        central.write(entry.name, 0, entry.name.length);
+        count++;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed)
+            return;
+        try {
+            closeEntry();
+            while (!queue.isEmpty())
+                writeQueued(queue.removeFirst());
+            closed = true;
+
+            long cdOffset = written;
+            long cdSize = central.size();
+            central.writeTo(out);
+            written += cdSize;
+
+            boolean zip64 = count >= 0xFFFF || cdOffset >= 0xFFFFFFFFL || cdSize >= 0xFFFFFFFFL;
+            if (zip64) {
+                long zip64Offset = written;
+                writeInt(RawZipFile.ZIP64_END_HEADER);
+                writeLong(44);
+                writeShort(45);
+                writeShort(45);
+                writeInt(0);
+                writeInt(0);
+                writeLong(count);
+                writeLong(count);
+                writeLong(cdSize);
+                writeLong(cdOffset);
+
+                writeInt(RawZipFile.ZIP64_LOCATOR);
+                writeInt(0);
+                writeLong(zip64Offset);
+                writeInt(1);
+            }
+
+            writeInt(RawZipFile.END_HEADER);
+            writeShort(0);
+            writeShort(0);
+            writeShort((int)Math.min(count, 0xFFFF));
+            writeShort((int)Math.min(count, 0xFFFF));
+            writeInt(Math.min(cdSize, 0xFFFFFFFFL));
+            writeInt(Math.min(cdOffset, 0xFFFFFFFFL));
+            writeShort(0);
+        } finally {
+            out.close();
+        }
+    }
+
+    private void writeShort(int value) throws IOException {
+        out.write(value & 0xFF);
+        out.write((value >>> 8) & 0xFF);
+        written += 2;
+    }
+
+    private void writeInt(long value) throws IOException {
+        writeShort((int)(value & 0xFFFF));
+        writeShort((int)((value >>> 16) & 0xFFFF));
+    }
+
+    private void writeLong(long value) throws IOException {
+        writeInt(value & 0xFFFFFFFFL);
+        writeInt(value >>> 32);
+    }
+
+    private static void writeShort(ByteArrayOutputStream out, int value) {
+        out.write(value & 0xFF);
+        out.write((value >>> 8) & 0xFF);
+    }
+
+    private static void writeInt(ByteArrayOutputStream out, long value) {
+        writeShort(out, (int)(value & 0xFFFF));
+        writeShort(out, (int)((value >>> 16) & 0xFFFF));
+    }
+
+    private static class Pending {
+        private final byte[] name;
+        private final int flags;
+        private final long dosTime;
+        @Nullable
+        private CompletableFuture<Compressed> data;
+        private long size;
+
+        private Pending(byte[] name, int flags, long dosTime) {
+            this.name = name;
+            this.flags = flags;
+            this.dosTime = dosTime;
+        }
+    }
+
+    private static class Compressed {
+        private final int method;
+        private final long crc;
+        private final long size;
+        private final byte[] data;
+        private final int length;
+
+        private Compressed(int method, long crc, long size, byte[] data, int length) {
+            this.method = method;
+            this.crc = crc;
+            this.size = size;
+            this.data = data;
+            this.length = length;
+        }
+    }
+}
@@ -0,0 +1,310 @@
+/*
+ * Copyright (c) Forge Development LLC and contributors
+ * SPDX-License-Identifier: LGPL-2.1-only
+ */
+
+package net.minecraftforge.gradle.common.util;
+
+import org.gradle.StartParameter;
+import org.gradle.api.Project;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import javax.annotation.Nullable;
+
+/**
+ * Remembers what the {@link MavenArtifactDownloader} found in each remote maven repository, across daemons. Local
+ * repositories are cheap to check and may change at any time, so they are never remembered.
+ * <p>
+ * There are three kinds of entries: files a repository was found to have, files it was found not to have, and the
+ * versions dynamic {@code +} versions resolved to. Each expires after its own time to live, set in minutes with the
+ * system properties {@code net.minecraftforge.gradle.resolution.found_ttl}, {@code missing_ttl} and
+ * {@code version_ttl}. {@code --refresh-dependencies} ignores everything remembered, and {@code --offline} keeps
+ * using expired entries, as there is nothing better to go by.
+ * <p>
+ * Once {@link #init(Project)} is called the entries are persisted in an append only journal in the ForgeGradle cache,
+ * the same way as the {@link DigestCache}. Set the system property {@code net.minecraftforge.gradle.resolution_cache}
+ * to {@code false} to disable it.
+ */
+public class ResolutionCache {
+    private static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("net.minecraftforge.gradle.resolution_cache", "true"));
+    static final String JOURNAL_NAME = "resolution.journal";
+    private static final long REMOVED = 0;
+
+    private static final Map<String, Entry> ENTRIES = new ConcurrentHashMap<>();
+    private static final Map<Kind, Stats> STATS = new EnumMap<>(Kind.class);
+    @Nullable
+    private static volatile Journal journal;
+    private static volatile boolean offline;
+    private static volatile boolean refresh;
+
+    static {
+        for (Kind kind : Kind.values())
+            STATS.put(kind, new Stats());
+    }
+
+    public enum Kind {
+        FOUND("net.minecraftforge.gradle.resolution.found_ttl", TimeUnit.DAYS.toMinutes(7)),
+        MISSING("net.minecraftforge.gradle.resolution.missing_ttl", TimeUnit.DAYS.toMinutes(1)),
+        VERSION("net.minecraftforge.gradle.resolution.version_ttl", TimeUnit.HOURS.toMinutes(1));
+
+        private final long ttl;
+
+        Kind(String property, long minutes) {
+            this.ttl = TimeUnit.MINUTES.toMillis(Long.getLong(property, minutes));
+        }
+    }
+
+    /**
+     * Loads, and starts persisting to, the journal in the ForgeGradle cache of this project.
+     */
+    public static synchronized void init(Project project) {
+        if (!ENABLED)
+            return;
+
+        StartParameter start = project.getGradle().getStartParameter();
+        offline = start.isOffline();
+        refresh = start.isRefreshDependencies();
+
+        Path target = Utils.getCacheBase(project).resolve(JOURNAL_NAME);
+        Journal old = journal;
+        if (old != null && target.equals(old.getPath()))
+            return;
+
+        journal = null;
+        ENTRIES.clear();
+        if (old != null) {
+            try {
+                old.close();
+            } catch (IOException e) {
+                // Nothing we can do, it isn't used anymore either way
+            }
+        }
+
+        Journal next;
+        List<String> lines;
+        try {
+            next = new Journal(target);
+            lines = next.read();
+        } catch (IOException e) {
+            project.getLogger().debug("Failed to read resolution journal " + target, e);
+            return;
+        }
+
+        ENTRIES.putAll(replay(lines));
+        long now = System.currentTimeMillis();
+        ENTRIES.values().removeIf(entry -> entry.isExpired(now) && !offline);
+        journal = next;
+
+        if (lines.size() > 1000 && lines.size() > ENTRIES.size() * 2)
+            compact(next);
+    }
+
+    /*
+     * The entries left after every line is applied in order, later lines replacing or removing earlier ones.
+     */
+    private static Map<String, Entry> replay(List<String> lines) {
+        Map<String, Entry> ret = new LinkedHashMap<>();
+        for (String line : lines) {
+            Entry entry = Entry.parse(line);
+            if (entry == null)
+                continue;
+            if (entry.expires == REMOVED)
+                ret.remove(entry.key);
+            else
+                ret.put(entry.key, entry);
+        }
+        return ret;
+    }
+
+    /**
+     * Checks if the repository was found to have the file at the path.
+     */
+    public static boolean isFound(URI repo, String path) {
+        return get(Kind.FOUND, repo + "|" + path) != null;
+    }
+
+    /**
+     * Checks if the repository was found not to have the file at the path.
+     */
+    public static boolean isMissing(URI repo, String path) {
+        return get(Kind.MISSING, repo + "|" + path) != null;
+    }
+
+    /**
+     * Returns the version a dynamic artifact descriptor last resolved to.
+     */
+    @Nullable
+    public static String getVersion(String descriptor) {
+        Entry entry = get(Kind.VERSION, descriptor);
+        return entry == null ? null : entry.value;
+    }
+
+    public static void recordFound(URI repo, String path) {
+        String key = repo + "|" + path;
+        put(Kind.FOUND, key, "");
+        remove(Kind.MISSING, key);
+    }
+
+    public static void recordMissing(URI repo, String path) {
+        String key = repo + "|" + path;
+        put(Kind.MISSING, key, "");
+        remove(Kind.FOUND, key);
+    }
+
+    public static void recordVersion(String descriptor, String version) {
+        put(Kind.VERSION, descriptor, version);
+    }
+
+    @Nullable
+    private static Entry get(Kind kind, String key) {
+        if (!ENABLED)
+            return null;
+
+        Stats stats = STATS.get(kind);
+        stats.lookups.incrementAndGet();
+        if (refresh)
+            return null;
+
+        Entry entry = ENTRIES.get(kind.name() + ':' + key);
+        if (entry == null || (entry.isExpired(System.currentTimeMillis()) && !offline))
+            return null;
+        stats.hits.incrementAndGet();
+        return entry;
+    }
+
+    private static void put(Kind kind, String key, String value) {
+        if (!ENABLED)
+            return;
+
+        Entry entry = new Entry(kind, kind.name() + ':' + key, System.currentTimeMillis() + kind.ttl, value);
+        Entry old = ENTRIES.put(entry.key, entry);
+        // Repeated lookups would fill the journal, so only write when something changed or half the old entry's life is gone
+        if (old == null || !old.value.equals(value) || old.expires < entry.expires - kind.ttl / 2)
+            append(entry.serialize());
+    }
+
+    private static void remove(Kind kind, String key) {
+        if (ENABLED && ENTRIES.remove(kind.name() + ':' + key) != null)
+            append(new Entry(kind, kind.name() + ':' + key, REMOVED, "").serialize());
+    }
+
+    private static void append(String line) {
+        Journal target = journal;
+        if (target == null)
+            return;
+
+        try {
+            target.append(line);
+        } catch (IOException e) {
+            // The journal is only an optimization, keep the entry in memory
+        }
+    }
+
+    /*
+     * Keeps the live entries, including the ones other daemons appended since this one read the journal. Expired
+     * entries are kept too, they are still used in offline mode.
+     */
+    private static void compact(Journal target) {
+        try {
+            target.compact(lines -> replay(lines).values().stream().map(Entry::serialize).collect(Collectors.toList()));
+        } catch (IOException e) {
+            // Try again next time
+        }
+    }
+
+    /**
+     * @return The journal entries are persisted to, or null if {@link #init(Project)} wasn't called.
+     */
+    @Nullable
+    public static Path getJournal() {
+        Journal ret = journal;
+        return ret == null ? null : ret.getPath();
+    }
+
+    /**
+     * @return Every remembered entry, including expired ones.
+     */
+    public static Collection<Entry> getEntries() {
+        return Collections.unmodifiableCollection(ENTRIES.values());
+    }
+
+    /**
+     * @return The lookups and hits of each kind of entry since the daemon started.
+     */
+    public static Map<Kind, Stats> getStatistics() {
+        return Collections.unmodifiableMap(STATS);
+    }
+
+    public static class Entry {
+        private final Kind kind;
+        private final String key;
+        private final long expires;
+        private final String value;
+
+        private Entry(Kind kind, String key, long expires, String value) {
+            this.kind = kind;
+            this.key = key;
+            this.expires = expires;
+            this.value = value;
+        }
+
+        public Kind getKind() {
+            return kind;
+        }
+
+        /**
+         * @return The repository URL for found and missing entries, the artifact descriptor for versions.
+         */
+        public String getSubject() {
+            String ret = key.substring(kind.name().length() + 1);
+            int idx = ret.indexOf('|');
+            return kind == Kind.VERSION || idx == -1 ? ret : ret.substring(0, idx);
+        }
+
+        public boolean isExpired(long now) {
+            return expires < now;
+        }
+
+        private String serialize() {
+            return kind.name() + '\t' + expires + '\t' + value + '\t' + key;
+        }
+
+        @Nullable
+        private static Entry parse(String line) {
+            String[] pts = line.split("\t", 4);
+            if (pts.length != 4)
+                return null;
+            try {
+                return new Entry(Kind.valueOf(pts[0]), pts[3], Long.parseLong(pts[1]), pts[2]);
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+    }
+
+    public static class Stats {
+        private final AtomicLong lookups = new AtomicLong();
+        private final AtomicLong hits = new AtomicLong();
+
+        public long getLookups() {
+            return lookups.get();
+        }
+
+        public long getHits() {
+            return hits.get();
+        }
+    }
+}
@@ -14,7 +14,6 @@ import net.minecraftforge.gradle.common.tasks.ide.CopyIntellijResources;
 import net.minecraftforge.gradle.common.util.VersionJson.Download;
 import net.minecraftforge.gradle.common.util.runs.RunConfigGenerator;
 
-import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.gradle.api.Project;
 import org.gradle.api.Task;
@@ -122,6 +121,19 @@ public class Utils {
         }
     }
 
+    /**
+     * Copies the entries accepted by the filter without recompressing them.
+     */
+    public static Set<String> copyZipEntries(RawZipWriter zout, RawZipFile zin, Predicate<String> filter) throws IOException {
+        Set<String> added = new HashSet<>();
+        for (RawZipFile.Entry entry : zin.getEntries()) {
+            if (!filter.test(entry.getName()) || added.contains(entry.getName())) continue;
+            zout.copyEntry(zin, entry, entry.getName(), 0);
+            added.add(entry.getName());
+        }
+        return added;
+    }
+
     public static Set<String> copyZipEntries(ZipOutputStream zout, ZipInputStream zin, Predicate<String> filter) throws IOException {
         Set<String> added = new HashSet<>();
         ZipEntry entry;
@@ -223,14 +235,10 @@ public class Utils {
     }
 
     public static File updateDownload(Project project, File target, Download dl) throws IOException {
-        if (!target.exists() || !HashFunction.SHA1.hash(target).equals(dl.sha1)) {
+        if (!target.exists() || !DigestCache.hash(target, HashFunction.SHA1).equals(dl.sha1)) {
             project.getLogger().lifecycle("Downloading: " + dl.url);
 
-            if (!target.getParentFile().exists()) {
-                target.getParentFile().mkdirs();
-            }
-
-            FileUtils.copyURLToFile(dl.url, target);
+            DownloadUtils.download(dl.url, target, HashFunction.SHA1, dl.sha1);
         }
         return target;
     }
@@ -248,10 +256,11 @@ public class Utils {
         updateHash(target, HashFunction.values());
     }
     public static void updateHash(File target, HashFunction... functions) throws IOException {
+        Map<HashFunction, String> hashes = target.exists() ? DigestCache.hashAll(target, functions) : Collections.emptyMap();
         for (HashFunction function : functions) {
             File cache = new File(target.getAbsolutePath() + "." + function.getExtension());
-            if (target.exists()) {
-                String hash = function.hash(target);
+            String hash = hashes.get(function);
+            if (hash != null) {
                 Files.write(cache.toPath(), hash.getBytes());
             } else if (cache.exists()) {
                 cache.delete();
@@ -6,6 +6,8 @@
 package net.minecraftforge.gradle.mcp;
 
 import net.minecraftforge.gradle.common.util.Artifact;
+import net.minecraftforge.gradle.common.util.DigestCache;
+import net.minecraftforge.gradle.common.util.ResolutionCache;
 import net.minecraftforge.gradle.common.util.Utils;
 import net.minecraftforge.gradle.mcp.tasks.DownloadMCPConfig;
 import net.minecraftforge.gradle.mcp.tasks.SetupMCP;
@@ -22,6 +24,9 @@ public class MCPPlugin implements Plugin<Project> {
 
     @Override
     public void apply(@Nonnull Project project) {
+        DigestCache.init(project);
+        ResolutionCache.init(project);
+
         // Needed to gain access to the JavaToolchainService as an extension
         project.getPluginManager().apply(JavaPlugin.class);
 
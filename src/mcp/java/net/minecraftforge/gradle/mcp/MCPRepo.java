@@ -19,6 +19,7 @@ import net.minecraftforge.gradle.common.util.DownloadUtils;
 import net.minecraftforge.gradle.common.util.HashFunction;
 import net.minecraftforge.gradle.common.util.HashStore;
 import net.minecraftforge.gradle.common.util.ManifestJson;
+import net.minecraftforge.gradle.common.util.MappingCache;
 import net.minecraftforge.gradle.common.util.MavenArtifactDownloader;
 import net.minecraftforge.gradle.common.util.McpNames;
 import net.minecraftforge.gradle.common.util.MinecraftRepo;
@@ -43,7 +44,6 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.net.URL;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.zip.ZipOutputStream;
@@ -93,7 +93,6 @@ public class MCPRepo extends BaseRepo {
     private final Project project;
     private final Repository repo;
     private final Map<String, MCPWrapper> wrappers = Maps.newHashMap();
-    private final Map<String, McpNames> mapCache = new HashMap<>();
 
     private MCPRepo(Project project, File cache, Logger log) {
         super(cache, log);
@@ -110,7 +109,7 @@ public class MCPRepo extends BaseRepo {
     }
     public static void attach(Project project) {
         MCPRepo instance = getInstance(project);
-        GradleRepositoryAdapter.add(project.getRepositories(), "MCP_DYNAMIC", instance.getCacheRoot(), instance.repo);
+        MavenArtifactDownloader.hideFromGradle(GradleRepositoryAdapter.add(project.getRepositories(), "MCP_DYNAMIC", instance.getCacheRoot(), instance.repo));
     }
 
     public static ArtifactProvider<ArtifactIdentifier> create(Project project) {
@@ -375,16 +374,6 @@ public class MCPRepo extends BaseRepo {
         return provider.getMappingsFile(this, project, channel, version);
     }
 
-    private McpNames loadMCPNames(String name, File data) throws IOException {
-        McpNames map = mapCache.get(name);
-        String hash = HashFunction.SHA1.hash(data);
-        if (map == null || !hash.equals(map.hash)) {
-            map = McpNames.load(data);
-            mapCache.put(name, map);
-        }
-        return map;
-    }
-
     @SuppressWarnings("unused")
     @Nullable
     private File findRenames(String classifier, IMappingFile.Format format, String version, String mapping, boolean obf, boolean reverse) throws IOException {
@@ -405,7 +394,7 @@ public class MCPRepo extends BaseRepo {
             if (!obf)
                 input = input.reverse().chain(input); //SRG->OBF + OBF->SRG = SRG->SRG
 
-            McpNames map = loadMCPNames(mapping, names);
+            McpNames map = MappingCache.loadNames(project, names);
             IMappingFile ret = input.rename(new IRenamer() {
                 @Override
                 public String rename(IField value) {
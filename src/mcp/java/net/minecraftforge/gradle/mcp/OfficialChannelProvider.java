@@ -8,6 +8,7 @@ package net.minecraftforge.gradle.mcp;
 import com.google.common.collect.ImmutableSet;
 import net.minecraftforge.gradle.common.util.HashFunction;
 import net.minecraftforge.gradle.common.util.HashStore;
+import net.minecraftforge.gradle.common.util.MappingCache;
 import net.minecraftforge.gradle.common.util.MavenArtifactDownloader;
 import net.minecraftforge.gradle.common.util.MinecraftRepo;
 import net.minecraftforge.gradle.common.util.Utils;
@@ -64,13 +65,13 @@ class OfficialChannelProvider implements ChannelProvider {
                 .add("codever", "2");
 
         if (!cache.isSame() || !mappings.exists()) {
-            IMappingFile pg_client = IMappingFile.load(client);
-            IMappingFile pg_server = IMappingFile.load(server);
+            IMappingFile pg_client = MappingCache.load(client);
+            IMappingFile pg_server = MappingCache.load(server);
 
             //Verify that the PG files merge, merge in MCPConfig, but doesn't hurt to double check here.
             //And if we don't we need to write a handler to spit out correctly sided info.
 
-            IMappingFile srg = IMappingFile.load(tsrg);
+            IMappingFile srg = MappingCache.load(tsrg);
 
             Map<String, String> cfields = new TreeMap<>();
             Map<String, String> sfields = new TreeMap<>();
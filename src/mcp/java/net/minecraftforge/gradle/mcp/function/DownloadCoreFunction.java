@@ -12,12 +12,19 @@ import com.google.gson.JsonObject;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.Reader;
+import java.util.Collections;
+import java.util.Set;
 
 class DownloadCoreFunction extends DownloadFileFunction {
     DownloadCoreFunction(String artifact, String ext) {
         super(env -> artifact + '.' + ext, env -> getDownloadInfo(env, artifact, ext));
     }
 
+    @Override
+    public Set<String> getStepDependencies() {
+        return Collections.singleton("downloadJson");
+    }
+
     private static DownloadInfo getDownloadInfo(MCPEnvironment environment, String artifact, String extension) {
         try {
             Gson gson = new Gson();
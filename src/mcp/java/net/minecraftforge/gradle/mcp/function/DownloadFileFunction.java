@@ -5,6 +5,8 @@
 
 package net.minecraftforge.gradle.mcp.function;
 
+import net.minecraftforge.gradle.common.util.DigestCache;
+import net.minecraftforge.gradle.common.util.DownloadUtils;
 import net.minecraftforge.gradle.common.util.HashFunction;
 import net.minecraftforge.gradle.common.util.Utils;
 import net.minecraftforge.gradle.mcp.util.MCPEnvironment;
@@ -29,6 +31,11 @@ class DownloadFileFunction implements MCPFunction {
         this(env -> defaultOutput, env -> new DownloadInfo(url, null, "unknown", null, null));
     }
 
+    @Override
+    public boolean isThreadSafe() {
+        return true;
+    }
+
     @Override
     public File execute(MCPEnvironment environment) throws Exception {
         File output = (File)environment.getArguments().computeIfAbsent("output", k -> environment.getFile(outputGetter.apply(environment)));
@@ -37,7 +44,7 @@ class DownloadFileFunction implements MCPFunction {
         Utils.delete(download); // This file should never exist, but abrupt termination of the process may leave it behind
 
         DownloadInfo info = downloadGetter.apply(environment);
-        if (info.hash != null && output.exists() && HashFunction.SHA1.hash(output).equalsIgnoreCase(info.hash)) {
+        if (info.hash != null && output.exists() && DigestCache.hash(output, HashFunction.SHA1).equalsIgnoreCase(info.hash)) {
             return output; // If the hash matches, don't download again
         }
         // Check if file exists in local installer cache
@@ -46,14 +53,15 @@ class DownloadFileFunction implements MCPFunction {
             if (localPath.exists() && HashFunction.SHA1.hash(localPath).equalsIgnoreCase(info.hash)) {
                 FileUtils.copyFile(localPath, download);
             } else {
-                FileUtils.copyURLToFile(new URL(info.url), download);
+                DownloadUtils.download(new URL(info.url), download, HashFunction.SHA1, info.hash);
             }
         } else {
-            FileUtils.copyURLToFile(new URL(info.url), download);
+            DownloadUtils.download(new URL(info.url), download, HashFunction.SHA1, info.hash);
         }
 
         if (output != download) {
-            if (FileUtils.contentEquals(output, download)) {
+            // The download was hashed as it was written, so only the old output may need to be read
+            if (DigestCache.hash(output, HashFunction.SHA1).equals(DigestCache.hash(download, HashFunction.SHA1))) {
                 download.delete();
             } else {
                 output.delete();
@@ -13,6 +13,8 @@ import com.google.gson.JsonObject;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.Reader;
+import java.util.Collections;
+import java.util.Set;
 
 class DownloadVersionJSONFunction extends DownloadFileFunction {
 
@@ -22,6 +24,11 @@ class DownloadVersionJSONFunction extends DownloadFileFunction {
         super(env -> DEFAULT_OUTPUT, DownloadVersionJSONFunction::getDownloadInfo);
     }
 
+    @Override
+    public Set<String> getStepDependencies() {
+        return Collections.singleton("downloadManifest");
+    }
+
     private static DownloadInfo getDownloadInfo(MCPEnvironment environment) {
         try {
             Gson gson = new Gson();
@@ -6,10 +6,13 @@
 package net.minecraftforge.gradle.mcp.function;
 
 import net.minecraftforge.gradle.common.util.HashStore;
+import net.minecraftforge.gradle.common.util.InProcessTools;
 import net.minecraftforge.gradle.common.util.Utils;
 import net.minecraftforge.gradle.mcp.util.MCPEnvironment;
 import org.gradle.jvm.toolchain.JavaLanguageVersion;
 import org.gradle.jvm.toolchain.JavaToolchainService;
+import org.gradle.workers.WorkQueue;
+import org.gradle.workers.WorkerExecutor;
 
 import javax.annotation.Nullable;
 import java.io.BufferedOutputStream;
@@ -17,7 +20,9 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -116,32 +121,90 @@ class ExecuteFunction implements MCPFunction {
         // Instead use a launcher compatible with the version required by MCP.
         JavaToolchainService toolchainService = environment.project.getExtensions().getByType(JavaToolchainService.class);
         JavaLanguageVersion toolchainVersion = this.javaVersion != null ? JavaLanguageVersion.of(this.javaVersion) : environment.getJavaVersion();
-        String launcher = toolchainService.launcherFor(spec -> spec.getLanguageVersion().set(toolchainVersion))
-                .get()
-                .getExecutablePath()
-                .getAsFile()
-                .getAbsolutePath();
+
+        // There is no working directory in process or in a shared worker, so resolve relative data files the same way the forked JVM would
+        List<String> resolvedArgs = runArgList.stream()
+                .map(arg -> data.containsValue(arg) && !new File(arg).isAbsolute() ? new File(workingDir, arg).getAbsolutePath() : arg)
+                .collect(Collectors.toList());
+        Function<String, String> quote = s -> '"' + s + '"';
+        File console = environment.getFile("console.log");
 
         // Execute command
-        try (BufferedOutputStream log_out = new BufferedOutputStream(new FileOutputStream(environment.getFile("console.log")))) {
-            environment.project.javaexec(java -> {
+        if (InProcessTools.isEnabled() && InProcessTools.canRun(toolchainVersion, jvmArgList)) {
+            try (BufferedOutputStream log_out = new BufferedOutputStream(new FileOutputStream(console))) {
                 PrintWriter writer = new PrintWriter(log_out);
-                Function<String, String> quote = s -> '"' + s + '"';
-                writer.println("JVM:         " + launcher);
-                writer.println("JVM Args:    " + jvmArgList.stream().map(quote).collect(Collectors.joining(", ")));
-                writer.println("Run Args:    " + runArgList.stream().map(quote).collect(Collectors.joining(", ")));
+                writer.println("JVM:         In process");
+                writer.println("Run Args:    " + resolvedArgs.stream().map(quote).collect(Collectors.joining(", ")));
                 writer.println("Classpath:   " + jar.getAbsolutePath());
-                writer.println("Working Dir: " + workingDir.getAbsolutePath());
                 writer.println("Main Class:  " + mainClass);
                 writer.flush();
-                java.executable(launcher);
-                java.setJvmArgs(jvmArgList);
-                java.setArgs(runArgList);
-                java.setClasspath(environment.project.files(jar));
-                java.setWorkingDir(workingDir);
-                java.getMainClass().set(mainClass);
-                java.setStandardOutput(log_out);
-            }).rethrowFailure().assertNormalExitValue();
+
+                InProcessTools.run(Collections.singletonList(jar), mainClass, resolvedArgs, log_out);
+            }
+        } else {
+            String launcher = toolchainService.launcherFor(spec -> spec.getLanguageVersion().set(toolchainVersion))
+                    .get()
+                    .getExecutablePath()
+                    .getAsFile()
+                    .getAbsolutePath();
+
+            WorkerExecutor workers = ExecuteToolAction.getWorkerExecutor(environment.project);
+            WorkQueue queue = null;
+            if (workers != null) {
+                // Java 18+ only allows the tool's System.exit to be trapped if a security manager is explicitly allowed
+                List<String> workerJvmArgs = new ArrayList<>(jvmArgList);
+                if (toolchainVersion.asInt() >= 12)
+                    workerJvmArgs.add("-Djava.security.manager=allow");
+
+                try (PrintWriter writer = new PrintWriter(new FileOutputStream(console))) {
+                    writer.println("JVM:         " + launcher + " (Worker)");
+                    writer.println("JVM Args:    " + workerJvmArgs.stream().map(quote).collect(Collectors.joining(", ")));
+                    writer.println("Run Args:    " + resolvedArgs.stream().map(quote).collect(Collectors.joining(", ")));
+                    writer.println("Classpath:   " + jar.getAbsolutePath());
+                    writer.println("Main Class:  " + mainClass);
+                }
+
+                try {
+                    queue = workers.processIsolation(spec -> spec.forkOptions(fork -> {
+                        fork.setExecutable(launcher);
+                        fork.setJvmArgs(workerJvmArgs);
+                    }));
+                    queue.submit(ExecuteToolAction.class, params -> {
+                        params.getClasspath().from(jar);
+                        params.getMainClass().set(mainClass);
+                        params.getArgs().set(resolvedArgs);
+                        params.getLogFile().set(console);
+                    });
+                } catch (RuntimeException e) {
+                    // Not running inside a task, or this Gradle version can't hand out workers here
+                    environment.project.getLogger().debug("Could not submit " + mainClass + " to a Gradle worker, using javaexec", e);
+                    queue = null;
+                }
+            }
+
+            if (queue != null) {
+                queue.await();
+            } else {
+                try (BufferedOutputStream log_out = new BufferedOutputStream(new FileOutputStream(console))) {
+                    environment.project.javaexec(java -> {
+                        PrintWriter writer = new PrintWriter(log_out);
+                        writer.println("JVM:         " + launcher);
+                        writer.println("JVM Args:    " + jvmArgList.stream().map(quote).collect(Collectors.joining(", ")));
+                        writer.println("Run Args:    " + runArgList.stream().map(quote).collect(Collectors.joining(", ")));
+                        writer.println("Classpath:   " + jar.getAbsolutePath());
+                        writer.println("Working Dir: " + workingDir.getAbsolutePath());
+                        writer.println("Main Class:  " + mainClass);
+                        writer.flush();
+                        java.executable(launcher);
+                        java.setJvmArgs(jvmArgList);
+                        java.setArgs(runArgList);
+                        java.setClasspath(environment.project.files(jar));
+                        java.setWorkingDir(workingDir);
+                        java.getMainClass().set(mainClass);
+                        java.setStandardOutput(log_out);
+                    }).rethrowFailure().assertNormalExitValue();
+                }
+            }
         }
 
         // Return the output file
@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) Forge Development LLC and contributors
+ * SPDX-License-Identifier: LGPL-2.1-only
+ */
+
+package net.minecraftforge.gradle.mcp.function;
+
+import net.minecraftforge.gradle.common.util.InProcessTools;
+import org.gradle.api.Project;
+import org.gradle.api.file.ConfigurableFileCollection;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.ListProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.workers.WorkAction;
+import org.gradle.workers.WorkParameters;
+import org.gradle.workers.WorkerExecutor;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+
+/**
+ * Runs a MCP tool inside a Gradle worker daemon.
+ * <p>
+ * Gradle keeps worker daemons alive between builds and hands them out again to any work with the same executable,
+ * classpath and JVM arguments. So the tool is loaded through {@link InProcessTools}, which keeps its class loader around,
+ * and later runs of the same tool jar get a JVM that has already loaded and JIT compiled it.
+ * <p>
+ * This is opt-in through the {@value #ENABLE_PROPERTY} system property, as the workers keep the tool's static state
+ * between runs and builds. Otherwise MCP tools are run with {@code javaexec}.
+ */
+public abstract class ExecuteToolAction implements WorkAction<ExecuteToolAction.Parameters> {
+    public static final String ENABLE_PROPERTY = "net.minecraftforge.gradle.mcp_workers";
+    private static final boolean ENABLED = Boolean.parseBoolean(System.getProperty(ENABLE_PROPERTY, "false"));
+
+    public interface Parameters extends WorkParameters {
+        ConfigurableFileCollection getClasspath();
+
+        Property<String> getMainClass();
+
+        ListProperty<String> getArgs();
+
+        RegularFileProperty getLogFile();
+    }
+
+    @Override
+    public void execute() {
+        Parameters params = getParameters();
+        try (OutputStream log = new BufferedOutputStream(new FileOutputStream(params.getLogFile().get().getAsFile(), true))) {
+            InProcessTools.run(params.getClasspath().getFiles(), params.getMainClass().get(), params.getArgs().get(), log);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Returns the worker executor of the project, or null if workers are disabled or not available.
+     */
+    @Nullable
+    static WorkerExecutor getWorkerExecutor(Project project) {
+        if (!ENABLED)
+            return null;
+        try {
+            return project.getObjects().newInstance(Services.class).getWorkerExecutor();
+        } catch (RuntimeException e) {
+            project.getLogger().debug("Gradle workers are not available, MCP tools will be run with javaexec", e);
+            return null;
+        }
+    }
+
+    public interface Services {
+        @Inject
+        WorkerExecutor getWorkerExecutor();
+    }
+}
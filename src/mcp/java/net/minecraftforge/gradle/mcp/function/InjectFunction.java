@@ -6,15 +6,14 @@
 package net.minecraftforge.gradle.mcp.function;
 
 import net.minecraftforge.gradle.common.util.HashStore;
-import net.minecraftforge.gradle.common.util.Utils;
+import net.minecraftforge.gradle.common.util.RawZipFile;
+import net.minecraftforge.gradle.common.util.RawZipWriter;
 import net.minecraftforge.gradle.mcp.util.MCPEnvironment;
 import net.minecraftforge.srgutils.MinecraftVersion;
 
 import org.apache.commons.io.IOUtils;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.HashSet;
@@ -22,10 +21,7 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.stream.Collectors;
-import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
-import java.util.zip.ZipInputStream;
-import java.util.zip.ZipOutputStream;
 
 class InjectFunction implements MCPFunction {
     private static final MinecraftVersion v1_14_4 = MinecraftVersion.from("1.14.4");
@@ -55,6 +51,11 @@ class InjectFunction implements MCPFunction {
         }
     }
 
+    @Override
+    public boolean isThreadSafe() {
+        return true;
+    }
+
     @Override
     public File execute(MCPEnvironment environment) throws Exception {
         File input = (File)environment.getArguments().get("input");
@@ -68,23 +69,20 @@ class InjectFunction implements MCPFunction {
         if (!output.getParentFile().exists()) output.getParentFile().mkdirs();
         output.createNewFile();
 
-        try (ZipInputStream zis = new ZipInputStream(new FileInputStream(input));
-            ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(output)) ) {
+        try (RawZipFile zis = new RawZipFile(input);
+            RawZipWriter zos = new RawZipWriter(output)) {
 
             Set<String> visited = new HashSet<>();
 
-            ZipEntry entry;
-            while ((entry = zis.getNextEntry()) != null) {
-                zos.putNextEntry(entry);
-                IOUtils.copyLarge(zis, zos);
-                zos.closeEntry();
+            for (RawZipFile.Entry entry : zis.getEntries()) {
+                zos.copyEntry(zis, entry);
                 if (template != null) {
                     String pkg = entry.isDirectory() && !entry.getName().endsWith("/") ? entry.getName() : entry.getName().indexOf('/') == -1 ? "" : entry.getName().substring(0, entry.getName().lastIndexOf('/'));
                     if (visited.add(pkg)) {
                         if (!pkg.startsWith("net/minecraft/") &&
                             (!pkg.startsWith("com/mojang/") || environment.getMinecraftVersion().compareTo(v1_14_4) <= 0)) //Add com/mojang package-infos in 1.15+, could probably get away without the version check
                             continue;
-                        zos.putNextEntry(Utils.getStableEntry(pkg + "/package-info.java"));
+                        zos.putNextEntry(pkg + "/package-info.java");
                         zos.write(template.replace("{PACKAGE}", pkg.replaceAll("/", ".")).getBytes(StandardCharsets.UTF_8));
                         zos.closeEntry();
                     }
@@ -95,9 +93,7 @@ class InjectFunction implements MCPFunction {
                 boolean filter = "server".equals(environment.side) ? add.getKey().contains("/client/") : add.getKey().contains("/server/");
                 if (filter)
                     continue;
-                ZipEntry info = new ZipEntry(add.getKey());
-                info.setTime(0);
-                zos.putNextEntry(info);
+                zos.putNextEntry(add.getKey(), 0);
                 zos.write(add.getValue());
                 zos.closeEntry();
             }
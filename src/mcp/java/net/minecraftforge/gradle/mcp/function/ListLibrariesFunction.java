@@ -26,6 +26,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.Collections;
 import java.util.List;
 import java.util.Set;
 import java.nio.charset.StandardCharsets;
@@ -40,6 +41,11 @@ class ListLibrariesFunction implements MCPFunction {
         this.spec = spec;
     }
 
+    @Override
+    public Set<String> getStepDependencies() {
+        return Collections.singleton("downloadJson");
+    }
+
     @Override
     public File execute(MCPEnvironment environment) {
         File output = (File)environment.getArguments().computeIfAbsent("output", (key) -> environment.getFile("libraries.txt"));
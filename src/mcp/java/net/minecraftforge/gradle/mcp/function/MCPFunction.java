@@ -9,7 +9,9 @@ import net.minecraftforge.gradle.common.util.HashStore;
 import net.minecraftforge.gradle.mcp.util.MCPEnvironment;
 import java.io.File;
 import java.io.Serializable;
+import java.util.Collections;
 import java.util.Map;
+import java.util.Set;
 import java.util.zip.ZipFile;
 
 public interface MCPFunction extends Serializable {
@@ -28,4 +30,20 @@ public interface MCPFunction extends Serializable {
     default void addInputs(HashStore cache, String prefix) {
     }
 
+    /**
+     * @return The names of steps whose output this function reads through {@link MCPEnvironment#getStepOutput(String)},
+     * in addition to the {@code {stepOutput}} references in its arguments.
+     */
+    default Set<String> getStepDependencies() {
+        return Collections.emptySet();
+    }
+
+    /**
+     * @return If this function can be executed on a thread other than the build thread, alongside other steps.
+     * Functions that resolve dependencies or launch processes through Gradle must return false.
+     */
+    default boolean isThreadSafe() {
+        return false;
+    }
+
 }
@@ -10,6 +10,7 @@ import codechicken.diffpatch.cli.PatchOperation;
 import codechicken.diffpatch.util.LoggingOutputStream;
 import codechicken.diffpatch.util.PatchMode;
 import net.minecraftforge.gradle.common.util.HashStore;
+import net.minecraftforge.gradle.common.util.ParallelPatcher;
 import net.minecraftforge.gradle.mcp.util.MCPEnvironment;
 import org.apache.commons.io.IOUtils;
 import org.gradle.api.logging.LogLevel;
@@ -29,6 +30,11 @@ class PatchFunction implements MCPFunction {
         path = data.get("patches");
     }
 
+    @Override
+    public boolean isThreadSafe() {
+        return true;
+    }
+
     @Override
     public File execute(MCPEnvironment environment) throws Exception {
         File input = (File) environment.getArguments().get("input");
@@ -53,19 +59,26 @@ class PatchFunction implements MCPFunction {
             return output;
         }
 
-        CliOperation.Result<PatchOperation.PatchesSummary> result = PatchOperation.builder()
-                .logTo(new LoggingOutputStream(environment.logger, LogLevel.LIFECYCLE))
-                .basePath(input.toPath())
-                .patchesPath(environment.getConfigZip().toPath())
-                .patchesPrefix(path)
-                .outputPath(output.toPath())
-                .verbose(false)
-                .mode(PatchMode.OFFSET)
-                .rejectsPath(rejects.toPath())
-                .build()
-                .operate();
+        int exit;
+        if (ParallelPatcher.canApply(input, output, rejects)) {
+            exit = ParallelPatcher.apply(input, environment.getConfigZip().toPath(), path, output, rejects,
+                    new LoggingOutputStream(environment.logger, LogLevel.LIFECYCLE), builder -> builder.verbose(false).mode(PatchMode.OFFSET));
+        } else {
+            CliOperation.Result<PatchOperation.PatchesSummary> result = PatchOperation.builder()
+                    .logTo(new LoggingOutputStream(environment.logger, LogLevel.LIFECYCLE))
+                    .basePath(input.toPath())
+                    .patchesPath(environment.getConfigZip().toPath())
+                    .patchesPrefix(path)
+                    .outputPath(output.toPath())
+                    .verbose(false)
+                    .mode(PatchMode.OFFSET)
+                    .rejectsPath(rejects.toPath())
+                    .build()
+                    .operate();
+            exit = result.exit;
+        }
 
-        boolean success = result.exit == 0;
+        boolean success = exit == 0;
         if (!success) {
             environment.logger.error("Rejects saved to: {}", rejects);
             throw new RuntimeException("Patch failure.");
@@ -6,21 +6,18 @@
 package net.minecraftforge.gradle.mcp.function;
 
 import net.minecraftforge.gradle.common.util.HashStore;
+import net.minecraftforge.gradle.common.util.RawZipFile;
+import net.minecraftforge.gradle.common.util.RawZipWriter;
 import net.minecraftforge.gradle.common.util.Utils;
 import net.minecraftforge.gradle.mcp.util.MCPEnvironment;
-import org.apache.commons.io.IOUtils;
 
 import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.util.Map;
 import java.util.Set;
-import java.util.jar.JarEntry;
-import java.util.jar.JarInputStream;
-import java.util.jar.JarOutputStream;
+import java.util.jar.JarFile;
 import java.util.stream.Collectors;
 import java.util.zip.ZipFile;
 
@@ -42,6 +39,11 @@ class StripJarFunction implements MCPFunction {
         br.close();
     }
 
+    @Override
+    public boolean isThreadSafe() {
+        return true;
+    }
+
     @Override
     public File execute(MCPEnvironment environment) throws Exception {
         File input = (File)environment.getArguments().get("input");
@@ -60,24 +62,19 @@ class StripJarFunction implements MCPFunction {
     }
 
     private void strip(File input, File output, boolean whitelist) throws IOException {
-        JarInputStream is = new JarInputStream(new FileInputStream(input));
-        JarOutputStream os = new JarOutputStream(new FileOutputStream(output));
-
-        // Ignore any entry that's not allowed
-        JarEntry entry;
-        while ((entry = is.getNextJarEntry()) != null) {
-            if (!isEntryValid(entry, whitelist)) continue;
-            os.putNextEntry(entry);
-            IOUtils.copyLarge(is, os);
-            os.closeEntry();
+        try (RawZipFile is = new RawZipFile(input);
+             RawZipWriter os = new RawZipWriter(output)) {
+            // Ignore any entry that's not allowed
+            for (RawZipFile.Entry entry : is.getEntries()) {
+                if (!isEntryValid(entry, whitelist)) continue;
+                os.copyEntry(is, entry);
+            }
         }
-
-        os.close();
-        is.close();
     }
 
-    private boolean isEntryValid(JarEntry entry, boolean whitelist) {
-        return !entry.isDirectory() && filter.contains(entry.getName()) == whitelist;
+    private boolean isEntryValid(RawZipFile.Entry entry, boolean whitelist) {
+        // The manifest was never copied when this read the jar as a JarInputStream, so keep it that way
+        return !entry.isDirectory() && !JarFile.MANIFEST_NAME.equals(entry.getName()) && filter.contains(entry.getName()) == whitelist;
     }
 
 }
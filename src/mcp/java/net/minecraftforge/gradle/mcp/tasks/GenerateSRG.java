@@ -5,6 +5,7 @@
 
 package net.minecraftforge.gradle.mcp.tasks;
 
+import net.minecraftforge.gradle.common.util.MappingCache;
 import net.minecraftforge.gradle.common.util.MavenArtifactDownloader;
 import net.minecraftforge.gradle.common.util.McpNames;
 import net.minecraftforge.gradle.common.util.Utils;
@@ -42,11 +43,11 @@ public abstract class GenerateSRG extends DefaultTask {
         if (names == null)
             throw new IllegalStateException("Invalid mappings: " + getMappings() + " Could not find archive");
 
-        IMappingFile input = IMappingFile.load(getSrg().get().getAsFile());
-        if (!notch)
-            input = input.reverse().chain(input); // Reverse makes SRG->OBF, chain makes SRG->SRG
+        File srg = getSrg().get().getAsFile();
+        // Reverse makes SRG->OBF, chain makes SRG->SRG
+        IMappingFile input = notch ? MappingCache.load(srg) : MappingCache.loadIdentity(srg);
 
-        McpNames map = McpNames.load(names);
+        McpNames map = MappingCache.loadNames(getProject(), names);
         IMappingFile ret = input.rename(new IRenamer() {
             @Override
             public String rename(IField value) {
@@ -31,11 +31,11 @@ public class MCPEnvironment {
     }
 
     public Map<String, Object> getArguments() {
-        return runtime.currentStep.arguments;
+        return runtime.currentStep.get().arguments;
     }
 
     public File getWorkingDir() {
-        return runtime.currentStep.workingDirectory;
+        return runtime.currentStep.get().workingDirectory;
     }
 
     public File getConfigZip() {
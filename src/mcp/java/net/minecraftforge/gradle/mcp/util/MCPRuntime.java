@@ -15,11 +15,22 @@ import org.gradle.api.Project;
 import org.gradle.api.logging.Logger;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -30,6 +41,7 @@ import javax.annotation.Nullable;
 public class MCPRuntime {
 
     private static final Pattern OUTPUT_REPLACE_PATTERN = Pattern.compile("^\\{(\\w+)Output}$");
+    private static final int STEP_THREADS = Integer.getInteger("net.minecraftforge.gradle.mcp_step_threads", 4);
 
     final Project project;
     final MCPEnvironment environment;
@@ -38,7 +50,7 @@ public class MCPRuntime {
     final File zipFile;
 
     final Map<String, Step> steps = new LinkedHashMap<>();
-    Step currentStep;
+    final ThreadLocal<Step> currentStep = new ThreadLocal<>();
 
     public MCPRuntime(Project project, File mcp_config, MCPConfigV2 config, String side,
             File mcpDirectory, Map<String, MCPFunction> extraPres) {
@@ -94,6 +106,19 @@ public class MCPRuntime {
             File workingDir = new File(this.mcpDirectory, step.getName());
             this.steps.put(step.getName(), new Step(step.getName(), function, step.getValues(), workingDir, data));
         }
+
+        // Build the step graph from the {stepOutput} references, and the outputs functions read directly
+        for (Step step : this.steps.values()) {
+            for (Object value : step.arguments.values()) {
+                Matcher matcher = value instanceof String ? OUTPUT_REPLACE_PATTERN.matcher((String)value) : null;
+                if (matcher != null && matcher.find() && this.steps.containsKey(matcher.group(1)))
+                    step.dependencies.add(matcher.group(1));
+            }
+            for (String dependency : step.function.getStepDependencies()) {
+                if (this.steps.containsKey(dependency))
+                    step.dependencies.add(dependency);
+            }
+        }
     }
 
     public File execute(Logger logger) throws Exception {
@@ -119,29 +144,102 @@ public class MCPRuntime {
         ZipFile zip = new ZipFile(zipFile);
         for (Step step : steps.values()) {
             logger.info(" > Initializing '" + step.name + "'");
-            currentStep = step;
+            currentStep.set(step);
             step.initialize(zip);
         }
         zip.close();
 
-        File ret = null;
-        logger.lifecycle("Executing steps");
+        List<Step> toRun = new ArrayList<>();
         for (Step step : steps.values()) {
-            logger.lifecycle(" > Running '" + step.name + "'");
-            currentStep = step;
-            step.arguments.replaceAll((key, value) -> value instanceof String ? applyStepOutputSubstitutions((String)value) : value);
-            ret = step.execute();
-
-            if (stop != null && stop.equals(step.name)) {
-                logger.lifecycle("Stopping at requested step: " + ret);
-                return ret;
-            }
+            toRun.add(step);
+            if (step.name.equals(stop))
+                break;
         }
 
-        logger.lifecycle("MCP environment setup is complete");
+        logger.lifecycle("Executing steps");
+        long start = System.nanoTime();
+        runSteps(logger, toRun);
+        File ret = toRun.get(toRun.size() - 1).output;
+
+        if (stop != null && stop.equals(toRun.get(toRun.size() - 1).name)) {
+            logger.lifecycle("Stopping at requested step: " + ret);
+            return ret;
+        }
+
+        logger.lifecycle("MCP environment setup is complete in " + (System.nanoTime() - start) / 1_000_000 + "ms");
         return ret;
     }
 
+    /*
+     * Runs each step as soon as the steps it depends on are done. Steps that can run off the build thread are handed to
+     * a small pool, the rest are run on this thread in between, as they resolve dependencies or launch processes through
+     * Gradle which needs to happen on a thread Gradle knows about.
+     */
+    private void runSteps(Logger logger, List<Step> toRun) throws Exception {
+        Set<String> names = toRun.stream().map(s -> s.name).collect(Collectors.toSet());
+        Set<Step> pending = new LinkedHashSet<>(toRun);
+        Set<String> done = new HashSet<>();
+
+        ExecutorService executor = STEP_THREADS > 1 ? Executors.newFixedThreadPool(STEP_THREADS, r -> {
+            Thread thread = new Thread(r, "MCP Step " + environment.side);
+            thread.setDaemon(true);
+            return thread;
+        }) : null;
+        CompletionService<Step> completion = executor == null ? null : new ExecutorCompletionService<>(executor);
+        int running = 0;
+
+        try {
+            while (!pending.isEmpty() || running > 0) {
+                Future<Step> finished;
+                while (completion != null && (finished = completion.poll()) != null) {
+                    done.add(getResult(finished).name);
+                    running--;
+                }
+
+                Step local = null;
+                for (Iterator<Step> itr = pending.iterator(); itr.hasNext(); ) {
+                    Step step = itr.next();
+                    if (!step.dependencies.stream().allMatch(dep -> done.contains(dep) || !names.contains(dep)))
+                        continue;
+
+                    if (completion != null && step.function.isThreadSafe()) {
+                        itr.remove();
+                        completion.submit(() -> step.run(logger));
+                        running++;
+                    } else if (local == null) {
+                        itr.remove();
+                        local = step;
+                    }
+                }
+
+                if (local != null) {
+                    done.add(local.run(logger).name);
+                } else if (running > 0) {
+                    done.add(getResult(completion.take()).name);
+                    running--;
+                } else if (!pending.isEmpty()) {
+                    throw new IllegalStateException("MCP steps have circular dependencies: " + pending.stream().map(s -> s.name).collect(Collectors.joining(", ")));
+                }
+            }
+        } finally {
+            if (executor != null)
+                executor.shutdownNow();
+        }
+    }
+
+    private static Step getResult(Future<Step> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception)
+                throw (Exception)cause;
+            if (cause instanceof Error)
+                throw (Error)cause;
+            throw e;
+        }
+    }
+
     private Object applyStepOutputSubstitutions(String value) {
         Matcher matcher = OUTPUT_REPLACE_PATTERN.matcher(value);
         if (!matcher.find()) return value; // Not a replaceable string
@@ -157,9 +255,10 @@ public class MCPRuntime {
 
         private final String name;
         private final MCPFunction function;
+        private final Set<String> dependencies = new LinkedHashSet<>();
         final Map<String, Object> arguments;
         final File workingDirectory;
-        File output;
+        volatile File output;
 
         private Step(String name, MCPFunction function, Map<String, String> arguments, File workingDirectory, Map<String, String> data) {
             this.name = name;
@@ -173,6 +272,16 @@ public class MCPRuntime {
             function.initialize(environment, zip);
         }
 
+        private Step run(Logger logger) throws Exception {
+            logger.lifecycle(" > Running '" + name + "'");
+            long start = System.nanoTime();
+            currentStep.set(this);
+            arguments.replaceAll((key, value) -> value instanceof String ? applyStepOutputSubstitutions((String)value) : value);
+            execute();
+            logger.lifecycle(" > Finished '" + name + "' in " + (System.nanoTime() - start) / 1_000_000 + "ms");
+            return this;
+        }
+
         private File execute() throws Exception {
             try {
                 output = function.execute(environment);
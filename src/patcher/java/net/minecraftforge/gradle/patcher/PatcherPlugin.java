@@ -10,6 +10,7 @@ import net.minecraftforge.gradle.common.tasks.ApplyMappings;
 import net.minecraftforge.gradle.common.tasks.ApplyRangeMap;
 import net.minecraftforge.gradle.common.tasks.DownloadAssets;
 import net.minecraftforge.gradle.common.tasks.DownloadMCMeta;
+import net.minecraftforge.gradle.common.tasks.DownloadReport;
 import net.minecraftforge.gradle.common.tasks.DynamicJarExec;
 import net.minecraftforge.gradle.common.tasks.ExtractExistingFiles;
 import net.minecraftforge.gradle.common.tasks.ExtractMCPData;
@@ -17,11 +18,15 @@ import net.minecraftforge.gradle.common.tasks.ExtractNatives;
 import net.minecraftforge.gradle.common.tasks.ExtractRangeMap;
 import net.minecraftforge.gradle.common.tasks.ExtractZip;
 import net.minecraftforge.gradle.common.tasks.JarExec;
+import net.minecraftforge.gradle.common.tasks.PruneAssets;
+import net.minecraftforge.gradle.common.tasks.ResolutionCacheReport;
 import net.minecraftforge.gradle.common.util.Artifact;
 import net.minecraftforge.gradle.common.util.BaseRepo;
+import net.minecraftforge.gradle.common.util.DigestCache;
 import net.minecraftforge.gradle.common.util.EnvironmentChecks;
 import net.minecraftforge.gradle.common.util.MavenArtifactDownloader;
 import net.minecraftforge.gradle.common.util.MinecraftRepo;
+import net.minecraftforge.gradle.common.util.ResolutionCache;
 import net.minecraftforge.gradle.common.util.Utils;
 import net.minecraftforge.gradle.common.util.VersionJson;
 import net.minecraftforge.gradle.mcp.ChannelProvidersExtension;
@@ -60,7 +65,6 @@ import org.gradle.api.tasks.TaskContainer;
 import org.gradle.api.tasks.TaskProvider;
 import org.gradle.api.tasks.bundling.AbstractArchiveTask;
 import org.gradle.api.tasks.bundling.Jar;
-import org.gradle.api.tasks.bundling.Zip;
 import org.gradle.api.tasks.compile.JavaCompile;
 
 import codechicken.diffpatch.util.PatchMode;
@@ -82,6 +86,8 @@ public class PatcherPlugin implements Plugin<Project> {
     @Override
     public void apply(@Nonnull Project project) {
         EnvironmentChecks.checkEnvironment(project);
+        DigestCache.init(project);
+        ResolutionCache.init(project);
 
         final PatcherExtension extension = project.getExtensions().create(PatcherExtension.class, PatcherExtension.EXTENSION_NAME, PatcherExtension.class, project);
         project.getExtensions().create(ChannelProvidersExtension.EXTENSION_NAME, ChannelProvidersExtension.class);
@@ -115,6 +121,9 @@ public class PatcherPlugin implements Plugin<Project> {
         final TaskProvider<GeneratePatches> genPatches = tasks.register("genPatches", GeneratePatches.class);
         final TaskProvider<BakePatches> bakePatches = tasks.register("bakePatches", BakePatches.class);
         final TaskProvider<DownloadAssets> downloadAssets = tasks.register("downloadAssets", DownloadAssets.class);
+        tasks.register("pruneAssets", PruneAssets.class);
+        tasks.register("resolutionCacheReport", ResolutionCacheReport.class);
+        tasks.register("downloadReport", DownloadReport.class);
         final TaskProvider<ReobfuscateJar> reobfJar = tasks.register("reobfJar", ReobfuscateJar.class);
         final TaskProvider<GenerateBinPatches> genJoinedBinPatches = tasks.register("genJoinedBinPatches", GenerateBinPatches.class);
         final TaskProvider<GenerateBinPatches> genClientBinPatches = tasks.register("genClientBinPatches", GenerateBinPatches.class);
@@ -558,19 +567,11 @@ public class PatcherPlugin implements Plugin<Project> {
                     task.setLambdas(false);
                 });
 
-                // Zip up the current working folder as genPatches takes a zip
-                TaskProvider<Zip> dirtyZip = tasks.register("patchedZip", Zip.class);
-                dirtyZip.configure(task -> {
-                    task.from(extension.getPatchedSrc());
-                    task.getArchiveFileName().set("output.zip");
-                    task.getDestinationDirectory().set(project.getLayout().getBuildDirectory().dir(task.getName()));
-                });
-
-                // Fixup the inputs.
+                // Fixup the inputs. genPatches reads the working folder directly, so only changed files need to be read and diffed.
                 applyPatches.configure(task -> task.getBase().set(toMCPClean.flatMap(s -> s.getOutput().getAsFile())));
                 genPatches.configure(task -> {
                     task.getBase().set(toMCPClean.flatMap(ApplyMappings::getOutput));
-                    task.getModified().set(dirtyZip.flatMap(AbstractArchiveTask::getArchiveFile));
+                    task.getModifiedDirectory().set(extension.getPatchedSrc());
                 });
             }
 
@@ -5,6 +5,8 @@
 
 package net.minecraftforge.gradle.patcher.tasks;
 
+import net.minecraftforge.gradle.common.util.ParallelPatcher;
+
 import org.apache.commons.io.FileUtils;
 import org.gradle.api.DefaultTask;
 import org.gradle.api.file.DirectoryProperty;
@@ -27,6 +29,7 @@ import codechicken.diffpatch.util.PatchMode;
 import codechicken.diffpatch.util.archiver.ArchiveFormat;
 import java.io.File;
 import java.nio.file.Path;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 
 public abstract class ApplyPatches extends DefaultTask {
@@ -62,28 +65,39 @@ public abstract class ApplyPatches extends DefaultTask {
             rejectsFormat = ArchiveFormat.findFormat(rejectsPath.getFileName());
         }
 
-        PatchOperation.Builder builder = PatchOperation.builder()
-                .logTo(new LoggingOutputStream(getLogger(), LogLevel.LIFECYCLE))
-                .basePath(getBase().get().toPath())
-                .patchesPath(getPatches().get().getAsFile().toPath())
-                .outputPath(outputPath, outputFormat)
-                .rejectsPath(rejectsPath, rejectsFormat)
-                .level(level)
-                .summary(printSummary)
-                .mode(getPatchMode().get())
-                .aPrefix(getOriginalPrefix().get())
-                .bPrefix(getModifiedPrefix().get())
-                .patchesPrefix(getPatchesPrefix().get());
-        if (minFuzzQuality != -1) {
-            builder.minFuzz(minFuzzQuality);
-        }
-        if (maxFuzzOffset != -1) {
-            builder.maxOffset(maxFuzzOffset);
+        Consumer<PatchOperation.Builder> options = builder -> {
+            builder.level(level)
+                    .summary(printSummary)
+                    .mode(getPatchMode().get())
+                    .aPrefix(getOriginalPrefix().get())
+                    .bPrefix(getModifiedPrefix().get());
+            if (minFuzzQuality != -1) {
+                builder.minFuzz(minFuzzQuality);
+            }
+            if (maxFuzzOffset != -1) {
+                builder.maxOffset(maxFuzzOffset);
+            }
+        };
+
+        int exit;
+        File base = getBase().get();
+        File rejects = getRejects().getOrNull();
+        if (outputFormat == ArchiveFormat.ZIP && (rejects == null || rejectsFormat == ArchiveFormat.ZIP) && ParallelPatcher.canApply(base, getOutput().get().getAsFile(), rejects)) {
+            exit = ParallelPatcher.apply(base, getPatches().get().getAsFile().toPath(), getPatchesPrefix().get(), getOutput().get().getAsFile(), rejects,
+                    new LoggingOutputStream(getLogger(), LogLevel.LIFECYCLE), printSummary, options);
+        } else {
+            PatchOperation.Builder builder = PatchOperation.builder()
+                    .logTo(new LoggingOutputStream(getLogger(), LogLevel.LIFECYCLE))
+                    .basePath(base.toPath())
+                    .patchesPath(getPatches().get().getAsFile().toPath())
+                    .outputPath(outputPath, outputFormat)
+                    .rejectsPath(rejectsPath, rejectsFormat)
+                    .patchesPrefix(getPatchesPrefix().get());
+            options.accept(builder);
+
+            CliOperation.Result<PatchOperation.PatchesSummary> result = builder.build().operate();
+            exit = result.exit;
         }
-
-        CliOperation.Result<PatchOperation.PatchesSummary> result = builder.build().operate();
-
-        int exit = result.exit;
         if (exit != 0 && exit != 1) {
             throw new RuntimeException("DiffPatch failed with exit code: " + exit);
         }
@@ -7,6 +7,7 @@ package net.minecraftforge.gradle.patcher.tasks;
 
 import net.minecraftforge.gradle.common.config.MCPConfigV2;
 
+import net.minecraftforge.gradle.common.util.MappingCache;
 import net.minecraftforge.srgutils.IMappingFile;
 import org.apache.commons.io.IOUtils;
 import org.gradle.api.DefaultTask;
@@ -58,8 +59,8 @@ public abstract class CreateExc extends DefaultTask {
         List<String> lines = Files.readLines(getSrg().get().getAsFile(), StandardCharsets.UTF_8);
         lines = lines.stream().map(line -> line.split("#")[0]).filter(l -> !Strings.isNullOrEmpty(l.trim())).collect(Collectors.toList()); //Strip empty/comments
 
-        Map<String, String> classes = IMappingFile.load(getSrg().get().getAsFile()).getClasses().stream()
-                .collect(Collectors.toMap(IMappingFile.IClass::getOriginal, IMappingFile.IClass::getMapped));
+        Map<String, String> classes = MappingCache.derive(getSrg().get().getAsFile(), "classes", mappings -> mappings.getClasses().stream()
+                .collect(Collectors.toMap(IMappingFile.IClass::getOriginal, IMappingFile.IClass::getMapped)));
 
         String currentClass = null;
         for (String line : lines) {
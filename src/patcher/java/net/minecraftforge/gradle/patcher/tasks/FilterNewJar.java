@@ -5,10 +5,11 @@
 
 package net.minecraftforge.gradle.patcher.tasks;
 
+import net.minecraftforge.gradle.common.util.MappingCache;
+import net.minecraftforge.gradle.common.util.RawZipFile;
+import net.minecraftforge.gradle.common.util.RawZipWriter;
 import net.minecraftforge.gradle.common.util.Utils;
 
-import net.minecraftforge.srgutils.IMappingFile;
-import org.apache.commons.io.IOUtils;
 import org.gradle.api.DefaultTask;
 import org.gradle.api.file.ConfigurableFileCollection;
 import org.gradle.api.file.RegularFileProperty;
@@ -18,13 +19,10 @@ import org.gradle.api.tasks.OutputFile;
 import org.gradle.api.tasks.TaskAction;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.HashSet;
 import java.util.Set;
-import java.util.stream.Collectors;
 import java.util.zip.ZipFile;
-import java.util.zip.ZipOutputStream;
 
 public abstract class FilterNewJar extends DefaultTask { //TODO: Copy task?
     public FilterNewJar() {
@@ -40,22 +38,18 @@ public abstract class FilterNewJar extends DefaultTask { //TODO: Copy task?
             }
         }
 
-        Set<String> classes = IMappingFile.load(getSrg().get().getAsFile()).getClasses().stream()
-                .map(IMappingFile.IClass::getMapped)
-                .collect(Collectors.toSet());
+        Set<String> classes = MappingCache.getMappedClasses(getSrg().get().getAsFile());
 
-        try (ZipFile zin = new ZipFile(getInput().get().getAsFile());
-             ZipOutputStream out = new ZipOutputStream(new FileOutputStream(getOutput().get().getAsFile()))){
+        try (RawZipFile zin = new RawZipFile(getInput().get().getAsFile());
+             RawZipWriter out = new RawZipWriter(getOutput().get().getAsFile())) {
 
-            Utils.forZip(zin, entry -> {
+            for (RawZipFile.Entry entry : zin.getEntries()) {
                 if (entry.isDirectory() || filter.contains(entry.getName()) ||
                         (entry.getName().endsWith(".class") && isVanilla(classes, entry.getName().substring(0, entry.getName().length() - 6)))) {
-                    return;
+                    continue;
                 }
-                out.putNextEntry(Utils.getStableEntry(entry.getName()));
-                IOUtils.copy(zin.getInputStream(entry), out);
-                out.closeEntry();
-            });
+                out.copyEntry(zin, entry, entry.getName(), Utils.ZIPTIME);
+            }
         }
     }
 
@@ -5,6 +5,12 @@
 
 package net.minecraftforge.gradle.patcher.tasks;
 
+import net.minecraftforge.gradle.common.util.HashFunction;
+import net.minecraftforge.gradle.common.util.IncrementalIndex;
+import net.minecraftforge.gradle.common.util.RawZipFile;
+import net.minecraftforge.gradle.common.util.RawZipWriter;
+
+import org.apache.commons.io.FileUtils;
 import org.gradle.api.DefaultTask;
 import org.gradle.api.file.DirectoryProperty;
 import org.gradle.api.file.RegularFileProperty;
@@ -12,7 +18,9 @@ import org.gradle.api.logging.LogLevel;
 import org.gradle.api.provider.Property;
 import org.gradle.api.tasks.Console;
 import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.InputDirectory;
 import org.gradle.api.tasks.InputFile;
+import org.gradle.api.tasks.Internal;
 import org.gradle.api.tasks.Optional;
 import org.gradle.api.tasks.OutputDirectory;
 import org.gradle.api.tasks.TaskAction;
@@ -21,13 +29,31 @@ import codechicken.diffpatch.cli.CliOperation;
 import codechicken.diffpatch.cli.DiffOperation;
 import codechicken.diffpatch.util.LoggingOutputStream;
 import codechicken.diffpatch.util.archiver.ArchiveFormat;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.Nullable;
 
+/**
+ * Generates a patch for every file that differs between the base zip and the modified zip or directory.
+ *
+ * <p>Unless {@linkplain #setIncremental(boolean) disabled}, the content hash of every modified file and every generated
+ * patch is kept in an index in the task's temporary directory. Later runs with the same base and settings only diff the
+ * files whose hash changed, and only rewrite their {@code .patch} files. Any change to the base or settings, or to the
+ * patches on disk, falls back to diffing everything.</p>
+ */
 public abstract class GeneratePatches extends DefaultTask {
+    private static final String PATCH_EXT = ".patch";
     private int contextLines = -1;
     private boolean autoHeader;
     private boolean verbose;
     private boolean printSummary;
+    private boolean incremental = true;
 
     public GeneratePatches() {
         getOriginalPrefix().convention("a/");
@@ -38,7 +64,7 @@ public abstract class GeneratePatches extends DefaultTask {
     @TaskAction
     public void doTask() throws Exception {
         Path base = getBase().get().getAsFile().toPath();
-        Path modified = getModified().get().getAsFile().toPath();
+        Path modified = (getModifiedDirectory().isPresent() ? getModifiedDirectory().get().getAsFile() : getModified().get().getAsFile()).toPath();
         Path output = getOutput().get().getAsFile().toPath();
         getProject().getLogger().info("Base: {}", base);
         getProject().getLogger().info("Modified: {}", modified);
@@ -48,6 +74,33 @@ public abstract class GeneratePatches extends DefaultTask {
             outputFormat = ArchiveFormat.findFormat(output.getFileName());
         }
 
+        // Only a directory of patches can be updated one file at a time
+        if (!incremental || outputFormat != null) {
+            diff(base, modified, output, outputFormat);
+            return;
+        }
+
+        IncrementalIndex index = new IncrementalIndex(new File(getTemporaryDir(), "index.json"), getLogger());
+        String settings = HashFunction.SHA1.hash(String.join("\n", HashFunction.SHA1.hash(base),
+                getOriginalPrefix().get(), getModifiedPrefix().get(), getLineEnding().get(),
+                Integer.toString(contextLines), Boolean.toString(autoHeader)));
+        Map<String, String> files = IncrementalIndex.hashFiles(modified);
+
+        Map<String, String> old = index.load(settings, output);
+        if (old == null) {
+            getLogger().info("Generating all patches");
+            diff(base, modified, output, null);
+        } else {
+            Set<String> changed = IncrementalIndex.changed(files, old);
+            getLogger().lifecycle("Regenerating patches for {} changed files", changed.size());
+            if (!changed.isEmpty())
+                diffChanged(base, modified, output, changed);
+        }
+
+        index.save(settings, files, output);
+    }
+
+    private void diff(Path base, Path modified, Path output, @Nullable ArchiveFormat outputFormat) throws IOException {
         DiffOperation.Builder builder = DiffOperation.builder()
                 .logTo(new LoggingOutputStream(getLogger(), LogLevel.LIFECYCLE))
                 .aPath(base)
@@ -72,12 +125,81 @@ public abstract class GeneratePatches extends DefaultTask {
         }
     }
 
+    /*
+     * DiffPatch diffs each file on its own, so diffing zips of just the changed files gives the same patches for them.
+     */
+    private void diffChanged(Path base, Path modified, Path output, Set<String> changed) throws IOException {
+        File temp = new File(getTemporaryDir(), "incremental");
+        FileUtils.deleteDirectory(temp);
+        File patches = new File(temp, "patches");
+        File baseZip = new File(temp, "base.zip");
+        File modifiedZip = new File(temp, "modified.zip");
+        if (!temp.mkdirs())
+            throw new IOException("Could not create directory: " + temp);
+
+        try {
+            try (RawZipFile zin = new RawZipFile(base.toFile());
+                 RawZipWriter zout = new RawZipWriter(baseZip)) {
+                for (String name : changed) {
+                    RawZipFile.Entry entry = zin.getEntry(name);
+                    if (entry != null)
+                        zout.copyEntry(zin, entry);
+                }
+            }
+
+            try (RawZipWriter zout = new RawZipWriter(modifiedZip)) {
+                if (Files.isDirectory(modified)) {
+                    for (String name : changed) {
+                        Path file = modified.resolve(name);
+                        if (Files.isRegularFile(file)) {
+                            zout.putNextEntry(name);
+                            Files.copy(file, zout);
+                            zout.closeEntry();
+                        }
+                    }
+                } else {
+                    try (RawZipFile zin = new RawZipFile(modified.toFile())) {
+                        for (String name : changed) {
+                            RawZipFile.Entry entry = zin.getEntry(name);
+                            if (entry != null)
+                                zout.copyEntry(zin, entry);
+                        }
+                    }
+                }
+            }
+
+            diff(baseZip.toPath(), modifiedZip.toPath(), patches.toPath(), null);
+
+            for (String name : changed) {
+                Path generated = patches.toPath().resolve(name + PATCH_EXT);
+                Path target = output.resolve(name + PATCH_EXT);
+                if (Files.exists(generated)) {
+                    Files.createDirectories(target.getParent());
+                    Files.copy(generated, target, StandardCopyOption.REPLACE_EXISTING);
+                } else {
+                    // Same as the base again
+                    Files.deleteIfExists(target);
+                }
+            }
+        } finally {
+            FileUtils.deleteDirectory(temp);
+        }
+    }
+
     @InputFile
     public abstract RegularFileProperty getBase();
 
     @InputFile
+    @Optional
     public abstract RegularFileProperty getModified();
 
+    /**
+     * A directory to read the modified files from directly, used instead of {@link #getModified()} if set.
+     */
+    @InputDirectory
+    @Optional
+    public abstract DirectoryProperty getModifiedDirectory();
+
     @OutputDirectory
     public abstract DirectoryProperty getOutput();
 
@@ -123,6 +245,18 @@ public abstract class GeneratePatches extends DefaultTask {
         this.verbose = verbose;
     }
 
+    /**
+     * Only diff the files that changed since the last run, see the class docs.
+     */
+    @Internal
+    public boolean isIncremental() {
+        return incremental;
+    }
+
+    public void setIncremental(boolean incremental) {
+        this.incremental = incremental;
+    }
+
     @Console
     public boolean isPrintSummary() {
         return printSummary;
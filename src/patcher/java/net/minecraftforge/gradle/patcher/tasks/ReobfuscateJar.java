@@ -7,6 +7,7 @@ package net.minecraftforge.gradle.patcher.tasks;
 
 import com.google.common.collect.ImmutableMultimap;
 import net.minecraftforge.gradle.common.tasks.JarExec;
+import net.minecraftforge.gradle.common.util.MappingCache;
 import net.minecraftforge.gradle.common.util.Utils;
 
 import net.minecraftforge.srgutils.IMappingFile;
@@ -56,7 +57,7 @@ public abstract class ReobfuscateJar extends JarExec {
 
         try (OutputStream log = new BufferedOutputStream(Files.newOutputStream(logFile.get().getAsFile().toPath(), StandardOpenOption.WRITE, StandardOpenOption.APPEND))) {
             Set<String> packages = new HashSet<>();
-            IMappingFile srgMappings = IMappingFile.load(getSrg().get().getAsFile());
+            IMappingFile srgMappings = MappingCache.load(getSrg().get().getAsFile());
             for (IMappingFile.IClass srgClass : srgMappings.getClasses()) {
                 String named = srgClass.getOriginal();
                 int idx = named.lastIndexOf('/');
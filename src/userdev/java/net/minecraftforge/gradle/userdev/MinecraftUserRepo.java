@@ -25,9 +25,13 @@ import net.minecraftforge.gradle.common.util.Artifact;
 import net.minecraftforge.gradle.common.util.BaseRepo;
 import net.minecraftforge.gradle.common.util.HashFunction;
 import net.minecraftforge.gradle.common.util.HashStore;
+import net.minecraftforge.gradle.common.util.MappingCache;
 import net.minecraftforge.gradle.common.util.MavenArtifactDownloader;
 import net.minecraftforge.gradle.common.util.McpNames;
 import net.minecraftforge.gradle.common.util.POMBuilder;
+import net.minecraftforge.gradle.common.util.ParallelPatcher;
+import net.minecraftforge.gradle.common.util.RawZipFile;
+import net.minecraftforge.gradle.common.util.RawZipWriter;
 import net.minecraftforge.gradle.common.util.RunConfig;
 import net.minecraftforge.gradle.common.util.Utils;
 import net.minecraftforge.gradle.mcp.MCPRepo;
@@ -71,15 +75,10 @@ import org.gradle.jvm.toolchain.JavaLanguageVersion;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.net.URI;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.FileSystem;
-import java.nio.file.FileSystems;
 import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -88,27 +87,30 @@ import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.function.Consumer;
 import java.util.function.Predicate;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
-import java.util.zip.ZipInputStream;
-import java.util.zip.ZipOutputStream;
 
 import javax.annotation.Nullable;
 
 public class MinecraftUserRepo extends BaseRepo {
     public static final boolean CHANGING_USERDEV = false; //Used when testing to update the userdev cache every 30 seconds.
+    // Set to false to always remap the SRG jar, instead of recompiling Minecraft once mapped sources exist. Sources are still generated for IDEs.
+    private static final boolean RECOMPILE = Boolean.parseBoolean(System.getProperty("net.minecraftforge.gradle.recompile", "true"));
+    // Set to false to keep each patched source layer in memory instead of writing it to a temporary jar. Faster, but needs a lot more heap.
+    private static final boolean SPILL_PATCHES = Boolean.parseBoolean(System.getProperty("net.minecraftforge.gradle.spill_patches", "true"));
     private static final MinecraftVersion v1_13 = MinecraftVersion.from("1.13");
     private final Project project;
     private final String GROUP;
@@ -119,7 +121,6 @@ public class MinecraftUserRepo extends BaseRepo {
     private final String AT_HASH;
     private final String MAPPING;
     private final boolean isPatcher;
-    private final Map<String, McpNames> mapCache = new HashMap<>();
     private boolean loadedParents = false;
     private Patcher parent;
     @Nullable
@@ -565,30 +566,54 @@ public class MinecraftUserRepo extends BaseRepo {
 
     @Nullable
     private File findRaw(@Nullable String mapping) throws IOException {
-        File names = findMapping(mapping);
-        HashStore cache = commonHash(names)
-            .add("codever", "3");
-
-        if (mapping != null && names == null) {
+        if (mapping != null && findMapping(mapping) == null) {
             debug("  Finding Raw: Could not find names, exiting");
             return null;
         }
 
-        File recomp = findRecomp(mapping, false);
+        File recomp = RECOMPILE ? findRecomp(mapping, false) : null;
         if (recomp != null) {
             debug("  Finding Raw: Returning Recomp: " + recomp);
             return recomp;
         }
 
+        return findBinary(mapping);
+    }
+
+    /*
+     * The binary jar with the given names, never the recompiled one, so its content doesn't depend on what was built before.
+     */
+    @Nullable
+    private File findBinary(@Nullable String mapping) throws IOException {
+        File names = findMapping(mapping);
+        HashStore cache = commonHash(names)
+            .add("codever", "4");
+
         if (mapping == null && parent == null) {
             debug("  Finding Raw: Userdev does not provide SRG Minecraft");
             return null;
         }
 
+        // The SRG binary already has everything but the names, so switching mappings is just a rename
+        File srg = null;
+        if (mapping != null && parent != null) {
+            srg = findBinary(null);
+            if (srg == null)
+                return null;
+            cache.add("srg", srg);
+        }
+
         File bin = cacheMapped(mapping, "jar");
         cache.load(cacheMapped(mapping, "jar.input"));
         if (cache.isSame() && bin.exists()) {
             debug("  Finding Raw: Cache Hit: " + bin);
+        } else if (srg != null) {
+            debug("  Finding Raw: Cache Miss, remapping SRG jar");
+            renameJar(srg, bin, findSrgToMcp(mapping, names));
+
+            debug("    Finished: " + bin);
+            Utils.updateHash(bin, HashFunction.SHA1);
+            cache.save();
         } else {
             debug("  Finding Raw: Cache Miss");
             StringBuilder baseAT = new StringBuilder();
@@ -604,98 +629,46 @@ public class MinecraftUserRepo extends BaseRepo {
             debug("    HasAts: " + hasAts);
 
             Set<String> packages = new HashSet<>();
-            File srged = findBinpatched(packages);
-
-            File mcinject;
-            if (mcp.wrapper.getConfig().isOfficial()) {
-                mcinject = srged;
+            File injected;
+            if (mcp.wrapper.getConfig().isOfficial() && parent != null && !isNotchObf()) {
+                // Nothing needs the merged jar on its own, so add the MCP injected classes while merging
+                injected = findBinpatched(packages, true);
+                if (injected == null)
+                    return null;
             } else {
-                mcinject = cacheRaw("mci", "jar");
-
-                debug("    Applying MCInjector");
-                // Apply MCInjector so we can compile against this jar
-                ApplyMCPFunction mci = createTask("mciJar", ApplyMCPFunction.class);
-                mci.getFunctionName().set("mcinject");
-                mci.setHasLog(false);
-                mci.getInput().set(srged);
-                mci.getMCP().set(mcp.getZip());
-                mci.getOutput().set(mcinject);
-                mci.apply();
-            }
-
-            debug("    Creating MCP Inject Sources");
-            //Build and inject MCP injected sources
-            File inject_src = cacheRaw("inject_src", "jar");
-
-            if (!inject_src.getParentFile().exists() && !inject_src.getParentFile().mkdirs())
-                throw new RuntimeException("Could not create directory: " + inject_src.getParentFile().getAbsolutePath());
-
-            try (ZipInputStream zin = new ZipInputStream(new FileInputStream(mcp.getZip()));
-                 ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(inject_src)) ) {
-                String prefix = mcp.wrapper.getConfig().getData("inject");
-                String template = null;
-                ZipEntry entry;
-                while ((entry = zin.getNextEntry()) != null) {
-                    if (!entry.getName().startsWith(prefix) || entry.isDirectory())
-                        continue;
-
-                    // If an entry has a specific side in its name, don't apply
-                    // it when we're on the opposite side. Entries without a specific
-                    // side should always be applied
-                    if ("server".equals(NAME) && entry.getName().contains("/client/")) {
-                        continue;
-                    }
-
-                    if ("client".equals(NAME) && entry.getName().contains("/server/")) {
-                        continue;
-                    }
-
-                    String name = entry.getName().substring(prefix.length());
-                    if ("package-info-template.java".equals(name)) {
-                        template = new String(IOUtils.toByteArray(zin), StandardCharsets.UTF_8);
-                    } else {
-                        zos.putNextEntry(Utils.getStableEntry(name));
-                        IOUtils.copy(zin, zos);
-                        zos.closeEntry();
-                    }
-                }
+                File srged = findBinpatched(packages, false);
 
-                if (template != null) {
-                    for (String pkg : packages) {
-                        zos.putNextEntry(Utils.getStableEntry(pkg + "/package-info.java"));
-                        zos.write(template.replace("{PACKAGE}", pkg.replace("/", ".")).getBytes(StandardCharsets.UTF_8));
-                        zos.closeEntry();
-                    }
+                File mcinject;
+                if (mcp.wrapper.getConfig().isOfficial()) {
+                    mcinject = srged;
+                } else {
+                    mcinject = cacheRaw("mci", "jar");
+
+                    debug("    Applying MCInjector");
+                    // Apply MCInjector so we can compile against this jar
+                    ApplyMCPFunction mci = createTask("mciJar", ApplyMCPFunction.class);
+                    mci.getFunctionName().set("mcinject");
+                    mci.setHasLog(false);
+                    mci.getInput().set(srged);
+                    mci.getMCP().set(mcp.getZip());
+                    mci.getOutput().set(mcinject);
+                    mci.apply();
                 }
-            }
 
-            debug("    Compiling MCP Inject sources");
-            File compiled = compileJava(inject_src, mcinject);
-            if (compiled == null)
-                return null;
+                debug("    Compiling MCP Inject sources");
+                File compiled = compileJava(buildInjectSources(packages), mcinject);
+                if (compiled == null)
+                    return null;
 
-            debug("    Injecting MCP Inject binairies");
-            File injected = cacheRaw("injected", "jar");
-            //Combine mci, and our recompiled MCP injected classes.
-            try (ZipInputStream zmci = new ZipInputStream(new FileInputStream(mcinject));
-                 ZipOutputStream zout = new ZipOutputStream(new FileOutputStream(injected))) {
-                ZipEntry entry = null;
-                while ((entry = zmci.getNextEntry()) != null) {
-                    zout.putNextEntry(Utils.getStableEntry(entry.getName()));
-                    IOUtils.copy(zmci, zout);
-                    zout.closeEntry();
+                debug("    Injecting MCP Inject binairies");
+                injected = cacheRaw("injected", "jar");
+                //Combine mci, and our recompiled MCP injected classes.
+                try (RawZipFile zmci = new RawZipFile(mcinject);
+                     RawZipWriter zout = new RawZipWriter(injected)) {
+                    for (RawZipFile.Entry entry : zmci.getEntries())
+                        zout.copyEntry(zmci, entry, entry.getName(), Utils.ZIPTIME);
+                    addCompiled(zout, compiled, new HashSet<>());
                 }
-                Files.walkFileTree(compiled.toPath(), new SimpleFileVisitor<Path>() {
-                    @Override
-                    public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
-                        try (InputStream fin = Files.newInputStream(file)) {
-                            zout.putNextEntry(Utils.getStableEntry(compiled.toPath().relativize(file).toString().replace('\\', '/')));
-                            IOUtils.copy(fin, zout);
-                            zout.closeEntry();
-                        }
-                        return FileVisitResult.CONTINUE;
-                    }
-                });
             }
 
             if (hasAts) {
@@ -719,17 +692,7 @@ public class MinecraftUserRepo extends BaseRepo {
             }
 
             debug("    Renaming/Fixing " + (hasAts ? "ATed" : "injected") + " jar");
-            JarExec rename = createTask("renameJar", JarExec.class);
-            rename.setHasLog(false);
-            rename.getTool().set(Utils.FART);
-            rename.getArgs().empty();
-            rename.getArgs().addAll("--input", (hasAts ? bin : injected).getAbsolutePath());
-            if (!hasAts)
-                rename.getArgs().addAll("--output", bin.getAbsolutePath());
-            if (mapping != null)
-                rename.getArgs().addAll("--map", findSrgToMcp(mapping, names).getAbsolutePath());
-            rename.getArgs().add("--src-fix"); // Set SourceFile attribute so IDEs will link decomped code on first pass, Line numbers will be screwy, but that's a todo.
-            rename.apply();
+            renameJar(hasAts ? bin : injected, bin, mapping == null ? null : findSrgToMcp(mapping, names));
 
             debug("    Finished: " + bin);
             Utils.updateHash(bin, HashFunction.SHA1);
@@ -738,9 +701,101 @@ public class MinecraftUserRepo extends BaseRepo {
         return bin;
     }
 
+    /**
+     * Runs FART over the jar, renaming it with the given SRG to MCP mappings if any, and fixing up SourceFile attributes.
+     * Renames in place if the input and output are the same file.
+     */
+    private void renameJar(File input, File output, @Nullable File srgToMcp) {
+        JarExec rename = createTask("renameJar", JarExec.class);
+        rename.setHasLog(false);
+        rename.getTool().set(Utils.FART);
+        rename.getArgs().empty();
+        rename.getArgs().addAll("--input", input.getAbsolutePath());
+        if (!input.equals(output))
+            rename.getArgs().addAll("--output", output.getAbsolutePath());
+        if (srgToMcp != null)
+            rename.getArgs().addAll("--map", srgToMcp.getAbsolutePath());
+        rename.getArgs().add("--src-fix"); // Set SourceFile attribute so IDEs will link decomped code on first pass, Line numbers will be screwy, but that's a todo.
+        rename.apply();
+    }
+
+    private File buildInjectSources(Set<String> packages) throws IOException {
+        debug("    Creating MCP Inject Sources");
+        //Build and inject MCP injected sources
+        File inject_src = cacheRaw("inject_src", "jar");
+
+        if (!inject_src.getParentFile().exists() && !inject_src.getParentFile().mkdirs())
+            throw new RuntimeException("Could not create directory: " + inject_src.getParentFile().getAbsolutePath());
+
+        try (RawZipFile zin = new RawZipFile(mcp.getZip());
+             RawZipWriter zos = new RawZipWriter(inject_src)) {
+            String prefix = mcp.wrapper.getConfig().getData("inject");
+            String template = null;
+            for (RawZipFile.Entry entry : zin.getEntries()) {
+                if (!entry.getName().startsWith(prefix) || entry.isDirectory())
+                    continue;
+
+                // If an entry has a specific side in its name, don't apply
+                // it when we're on the opposite side. Entries without a specific
+                // side should always be applied
+                if ("server".equals(NAME) && entry.getName().contains("/client/")) {
+                    continue;
+                }
+
+                if ("client".equals(NAME) && entry.getName().contains("/server/")) {
+                    continue;
+                }
+
+                String name = entry.getName().substring(prefix.length());
+                if ("package-info-template.java".equals(name)) {
+                    try (InputStream in = zin.getInputStream(entry)) {
+                        template = new String(IOUtils.toByteArray(in), StandardCharsets.UTF_8);
+                    }
+                } else {
+                    zos.copyEntry(zin, entry, name, Utils.ZIPTIME);
+                }
+            }
+
+            if (template != null) {
+                for (String pkg : packages) {
+                    zos.putNextEntry(pkg + "/package-info.java");
+                    zos.write(template.replace("{PACKAGE}", pkg.replace("/", ".")).getBytes(StandardCharsets.UTF_8));
+                    zos.closeEntry();
+                }
+            }
+        }
+        return inject_src;
+    }
+
+    private static void addCompiled(RawZipWriter zout, File compiled, Set<String> added) throws IOException {
+        Files.walkFileTree(compiled.toPath(), new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                String name = compiled.toPath().relativize(file).toString().replace('\\', '/');
+                try (InputStream fin = Files.newInputStream(file)) {
+                    zout.putNextEntry(name);
+                    IOUtils.copy(fin, zout);
+                    zout.closeEntry();
+                }
+                added.add(name);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private boolean isNotchObf() {
+        return parent != null && parent.getConfigV2() != null && parent.getConfigV2().getNotchObf();
+    }
+
+    /**
+     * Applies the binpatches and merges the result with vanilla and the patchers' universal jars.
+     *
+     * @param inject Compile the MCP inject sources against the patched classes and add them to the merged jar, only valid
+     *               when the merged jar does not need to be renamed or run through MCInjector afterwards.
+     */
     @Nullable
-    private File findBinpatched(final Set<String> packages) throws IOException {
-        boolean notch = parent != null && parent.getConfigV2() != null && parent.getConfigV2().getNotchObf();
+    private File findBinpatched(final Set<String> packages, boolean inject) throws IOException {
+        boolean notch = isNotchObf();
 
         String desc = "net.minecraft:" + (isPatcher ? "joined" : NAME) + ":" + (notch ? mcp.getMCVersion() : mcp.getVersion() + ":srg");
         File clean = MavenArtifactDownloader.generate(project, desc, true);
@@ -768,7 +823,7 @@ public class MinecraftUserRepo extends BaseRepo {
                 .map(e -> e.substring(0, e.length() - 6))
                 .collect(Collectors.toSet());
 
-                IMappingFile o2s = IMappingFile.load(obf2Srg);
+                IMappingFile o2s = MappingCache.load(obf2Srg);
                 o2s.getClasses().stream()
                 .filter(e -> vanillaClasses.contains(e.getOriginal()))
                 .map(IMappingFile.INode::getMapped)
@@ -801,31 +856,47 @@ public class MinecraftUserRepo extends BaseRepo {
             apply.getOutput().set(binpatched);
             apply.apply();
 
+            File compiled = null;
+            if (inject) {
+                // Same classes the merged jar would have, patched ones first
+                List<File> classpath = new ArrayList<>();
+                classpath.add(binpatched);
+                classpath.add(clean);
+                for (Patcher patcher = parent; patcher != null; patcher = patcher.getParent()) {
+                    if (patcher.getUniversal() != null)
+                        classpath.add(patcher.getUniversal());
+                }
+
+                debug("    Compiling MCP Inject sources");
+                compiled = compileJava(buildInjectSources(packages), true, classpath.toArray(new File[0]));
+                if (compiled == null)
+                    return null;
+            }
+
             debug("    Injecting binpatch extras");
-            File merged = cacheRaw(notch ? "obf" : "srg", "jar");
+            File merged = cacheRaw(inject ? "injected" : notch ? "obf" : "srg", "jar");
 
             //Combine all universals and vanilla together.
             Set<String> added = new HashSet<>();
-            try (ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(merged))) {
-
+            try (RawZipWriter zip = new RawZipWriter(merged)) {
                 //Add binpatched, then vanilla. First seen overrides any other entries
                 for (File file : new File[] {binpatched, clean}) {
-                    try (ZipInputStream zin = new ZipInputStream(new FileInputStream(file))) {
-                        ZipEntry entry;
-                        while ((entry = zin.getNextEntry()) != null) {
+                    try (RawZipFile zin = new RawZipFile(file)) {
+                        for (RawZipFile.Entry entry : zin.getEntries()) {
                             String name = entry.getName();
                             if (added.contains(name))
                                 continue;
-                            ZipEntry _new = new ZipEntry(name);
-                            _new.setTime(entry.getTime()); //Should be stable, but keeping time.
-                            zip.putNextEntry(_new);
-                            IOUtils.copy(zin, zip);
+                            zip.copyEntry(zin, entry); //Should be stable, but keeping time.
                             added.add(name);
                         }
                     }
                 }
 
                 copyResources(zip, added, true);
+
+                //Added last, so an inject class that clashes with an existing entry is still a duplicate entry error
+                if (compiled != null)
+                    addCompiled(zip, compiled, added);
             }
 
             if (notch) {
@@ -849,7 +920,7 @@ public class MinecraftUserRepo extends BaseRepo {
         }
     }
 
-    private void copyResources(ZipOutputStream zip, Set<String> added, boolean includeClasses) throws IOException {
+    private void copyResources(RawZipWriter zip, Set<String> added, boolean includeClasses) throws IOException {
         Map<String, List<String>> servicesLists = new HashMap<>();
         Predicate<String> filter = (name) ->
             added.contains(name) ||
@@ -860,9 +931,8 @@ public class MinecraftUserRepo extends BaseRepo {
         Patcher patcher = parent;
         while (patcher != null) {
             if (patcher.getUniversal() != null) {
-                try (ZipInputStream zin = new ZipInputStream(new FileInputStream(patcher.getUniversal()))) {
-                    ZipEntry entry;
-                    while ((entry = zin.getNextEntry()) != null) {
+                try (RawZipFile zin = new RawZipFile(patcher.getUniversal())) {
+                    for (RawZipFile.Entry entry : zin.getEntries()) {
                         String name = entry.getName();
                         if (filter.test(name))
                             continue;
@@ -873,12 +943,11 @@ public class MinecraftUserRepo extends BaseRepo {
                             List<String> existing = servicesLists.computeIfAbsent(name, k -> new ArrayList<>());
                             if (existing.size() > 0) existing.add("");
                             existing.add(String.format("# %s - %s", patcher.artifact, patcher.getUniversal().getCanonicalFile().getName()));
-                            existing.addAll(IOUtils.readLines(zin, StandardCharsets.UTF_8));
+                            try (InputStream in = zin.getInputStream(entry)) {
+                                existing.addAll(IOUtils.readLines(in, StandardCharsets.UTF_8));
+                            }
                         } else {
-                            ZipEntry _new = new ZipEntry(name);
-                            _new.setTime(0); //SHOULD be the same time as the main entry, but NOOOO _new.setTime(entry.getTime()) throws DateTimeException, so you get 0, screw you!
-                            zip.putNextEntry(_new);
-                            IOUtils.copy(zin, zip);
+                            zip.copyEntry(zin, entry, name, 0);
                             added.add(name);
                         }
                     }
@@ -886,9 +955,8 @@ public class MinecraftUserRepo extends BaseRepo {
             }
             // Dev time specific files, such as launch helper.
             if (patcher.getInject() != null) {
-                try (ZipInputStream zin = new ZipInputStream(new FileInputStream(patcher.getZip()))) {
-                    ZipEntry entry;
-                    while ((entry = zin.getNextEntry()) != null) {
+                try (RawZipFile zin = new RawZipFile(patcher.getZip())) {
+                    for (RawZipFile.Entry entry : zin.getEntries()) {
                         if (!entry.getName().startsWith(patcher.getInject()) || entry.getName().length() <= patcher.getInject().length())
                             continue;
 
@@ -900,12 +968,11 @@ public class MinecraftUserRepo extends BaseRepo {
                             List<String> existing = servicesLists.computeIfAbsent(name, k -> new ArrayList<>());
                             if (existing.size() > 0) existing.add("");
                             existing.add(String.format("# %s - %s", patcher.artifact, patcher.getZip().getCanonicalFile().getName()));
-                            existing.addAll(IOUtils.readLines(zin, StandardCharsets.UTF_8));
+                            try (InputStream in = zin.getInputStream(entry)) {
+                                existing.addAll(IOUtils.readLines(in, StandardCharsets.UTF_8));
+                            }
                         } else {
-                            ZipEntry _new = new ZipEntry(name);
-                            _new.setTime(0);
-                            zip.putNextEntry(_new);
-                            IOUtils.copy(zin, zip);
+                            zip.copyEntry(zin, entry, name, 0);
                             added.add(name);
                         }
                     }
@@ -916,25 +983,13 @@ public class MinecraftUserRepo extends BaseRepo {
 
         for(Map.Entry<String, List<String>> kv : servicesLists.entrySet()) {
             String name = kv.getKey();
-            ZipEntry _new = new ZipEntry(name);
-            _new.setTime(0);
-            zip.putNextEntry(_new);
+            zip.putNextEntry(name, 0);
             // JAR File Specification requires UTF-8 encoding here
             IOUtils.writeLines(kv.getValue(), "\n", zip, StandardCharsets.UTF_8);
             added.add(name);
         }
     }
 
-    private McpNames loadMCPNames(String name, File data) throws IOException {
-        McpNames map = mapCache.get(name);
-        String hash = HashFunction.SHA1.hash(data);
-        if (map == null || !hash.equals(map.hash)) {
-            map = McpNames.load(data);
-            mapCache.put(name, map);
-        }
-        return map;
-    }
-
     private File findObfToSrg(IMappingFile.Format format) throws IOException {
         String ext = format.name().toLowerCase();
         File root = cache(mcp.getArtifact().getGroup().replace('.', '/'), mcp.getArtifact().getName(), mcp.getArtifact().getVersion());
@@ -971,7 +1026,7 @@ public class MinecraftUserRepo extends BaseRepo {
         if (!cache.isSame() || !srg.exists()) {
             info("Creating SRG -> MCP TSRG");
             byte[] data = mcp.getData("mappings");
-            McpNames mcp_names = loadMCPNames(mapping, names);
+            McpNames mcp_names = MappingCache.loadNames(project, names);
             IMappingFile obf_to_srg = loadObfToSrg(data);
             IMappingFile srg_to_named = obf_to_srg.reverse().chain(obf_to_srg).rename(new IRenamer() {
                 @Override
@@ -1080,68 +1135,109 @@ public class MinecraftUserRepo extends BaseRepo {
             }
 
             boolean failed = false;
-            byte[] lastPatched = FileUtils.readFileToByteArray(decomp);
-            for (Patcher p : parents) {
-                ByteArrayOutputStream bout = new ByteArrayOutputStream();
-                PatchOperation.Builder opBuilder = PatchOperation.builder()
-                        .logTo(new LoggingOutputStream(project.getLogger(), LogLevel.LIFECYCLE))
-                        .basePath(lastPatched, ArchiveFormat.ZIP)
-                        .patchesPath(p.getZip().toPath())
-                        .patchesPrefix(p.getPatches())
-                        .outputPath(bout, ArchiveFormat.ZIP)
-                        .mode(PatchMode.ACCESS)
-                        .verbose(DEBUG)
-                        .summary(DEBUG);
-                // Note that pre-1.13 patches use ../{src-base,src-work}/minecraft/ prefixes
-                // instead of the default {a,b}/ prefixes. Also, be sure not to override the
-                // defaults with null values.
-                UserdevConfigV2 cfg = p.getConfigV2();
-                if (cfg != null) {
-                    if (cfg.patchesOriginalPrefix != null) {
-                        opBuilder = opBuilder.aPrefix(cfg.patchesOriginalPrefix);
+            // Either the last layer's jar on disk, or its bytes when not spilling
+            File lastFile = SPILL_PATCHES ? decomp : null;
+            byte[] lastPatched = SPILL_PATCHES ? null : FileUtils.readFileToByteArray(decomp);
+            // Two temp jars are enough, each layer only reads the one before it
+            File[] layers = { cacheAT("patched-layer0", "jar"), cacheAT("patched-layer1", "jar") };
+            try {
+                int layer = 0;
+                for (Patcher p : parents) {
+                    UserdevConfigV2 cfg = p.getConfigV2();
+                    Consumer<PatchOperation.Builder> options = builder -> {
+                        builder.mode(PatchMode.ACCESS)
+                                .verbose(DEBUG)
+                                .summary(DEBUG);
+                        // Note that pre-1.13 patches use ../{src-base,src-work}/minecraft/ prefixes
+                        // instead of the default {a,b}/ prefixes. Also, be sure not to override the
+                        // defaults with null values.
+                        if (cfg != null) {
+                            if (cfg.patchesOriginalPrefix != null) {
+                                builder.aPrefix(cfg.patchesOriginalPrefix);
+                            }
+                            if (cfg.patchesModifiedPrefix != null) {
+                                builder.bPrefix(cfg.patchesModifiedPrefix);
+                            }
+                        }
+                    };
+
+                    ByteArrayOutputStream bout = null;
+                    int exit;
+                    if (lastFile != null && ParallelPatcher.canApply(lastFile, layers[layer], null)) {
+                        exit = ParallelPatcher.apply(lastFile, p.getZip().toPath(), p.getPatches(), layers[layer], null,
+                                new LoggingOutputStream(project.getLogger(), LogLevel.LIFECYCLE), options);
+                    } else {
+                        PatchOperation.Builder opBuilder = PatchOperation.builder()
+                                .logTo(new LoggingOutputStream(project.getLogger(), LogLevel.LIFECYCLE))
+                                .patchesPath(p.getZip().toPath())
+                                .patchesPrefix(p.getPatches());
+                        if (lastFile != null) {
+                            opBuilder.basePath(lastFile.toPath())
+                                    .outputPath(layers[layer].toPath(), ArchiveFormat.ZIP);
+                        } else {
+                            bout = new ByteArrayOutputStream();
+                            opBuilder.basePath(lastPatched, ArchiveFormat.ZIP)
+                                    .outputPath(bout, ArchiveFormat.ZIP);
+                        }
+                        options.accept(opBuilder);
+                        CliOperation.Result<PatchOperation.PatchesSummary> result = opBuilder
+                                .build()
+                                .operate();
+                        exit = result.exit;
+                    }
+                    failed = exit != 0;
+                    if (failed) {
+                        break; //Pointless errors if we continue.
                     }
-                    if (cfg.patchesModifiedPrefix != null) {
-                        opBuilder = opBuilder.bPrefix(cfg.patchesModifiedPrefix);
+                    if (bout != null) {
+                        lastPatched = bout.toByteArray();
+                    } else {
+                        lastFile = layers[layer];
+                        layer ^= 1;
                     }
                 }
-                CliOperation.Result<PatchOperation.PatchesSummary> result = opBuilder
-                        .build()
-                        .operate();
-                failed = result.exit != 0;
                 if (failed) {
-                    break; //Pointless errors if we continue.
+                    throw new RuntimeException("Failed to apply patches to source file, see log for details: " + decomp);
                 }
-                lastPatched = bout.toByteArray();
-            }
-            if (failed)
-                throw new RuntimeException("Failed to apply patches to source file, see log for details: " + decomp);
-
-            try (ZipOutputStream zout = new ZipOutputStream(new FileOutputStream(patched))) {
-                Set<String> added = new HashSet<>();
-                if (lastPatched != null) {
-                    try (ZipInputStream zin = new ZipInputStream(new ByteArrayInputStream(lastPatched))) {
-                        added.addAll(Utils.copyZipEntries(zout, zin, e -> true));
+
+                try (RawZipWriter zout = new RawZipWriter(patched)) {
+                    Set<String> added = new HashSet<>();
+                    if (lastFile != null || lastPatched != null) {
+                        try (RawZipFile zin = lastFile != null ? new RawZipFile(lastFile) : new RawZipFile(lastPatched)) {
+                            added.addAll(Utils.copyZipEntries(zout, zin, e -> true));
+                        }
                     }
-                }
-                debug("    Injecting patcher extras");
-                // Walk parents and combine from bottom up so we get any overridden files.
-                patcher = parent;
-                while (patcher != null) {
-                    if (patcher.getSources() != null) {
-                        try (ZipInputStream zin = new ZipInputStream(new FileInputStream(patcher.getSources()))) {
-                            added.addAll(Utils.copyZipEntries(zout, zin, e -> !added.contains(e) && !e.startsWith("patches/"))); //Skip patches, as they are included in src for reference.
+                    debug("    Injecting patcher extras");
+                    // Walk parents and combine from bottom up so we get any overridden files.
+                    patcher = parent;
+                    while (patcher != null) {
+                        if (patcher.getSources() != null) {
+                            try (RawZipFile zin = new RawZipFile(patcher.getSources())) {
+                                added.addAll(Utils.copyZipEntries(zout, zin, e -> !added.contains(e) && !e.startsWith("patches/"))); //Skip patches, as they are included in src for reference.
+                            }
                         }
+                        patcher = patcher.getParent();
                     }
-                    patcher = patcher.getParent();
                 }
-
-                cache.save();
-                Utils.updateHash(patched, HashFunction.SHA1);
+            } finally {
+                // Also when patching or merging throws, the layers are full size copies of Minecraft
+                deleteLayers(layers);
             }
+
+            // The central directory is only written on close, so hash after it
+            cache.save();
+            Utils.updateHash(patched, HashFunction.SHA1);
         }
         return patched.exists() ? patched : null;
     }
 
+    private void deleteLayers(File[] layers) {
+        for (File layer : layers) {
+            if (layer.exists() && !layer.delete())
+                debug("    Could not delete temporary patch layer: " + layer);
+        }
+    }
+
     @Nullable
     private File findSource(@Nullable String mapping, boolean generate) throws IOException {
         File patched = findPatched(generate);
@@ -1175,10 +1271,9 @@ public class MinecraftUserRepo extends BaseRepo {
         if (cache.isSame() && sources.exists()) {
             debug("    Cache hit");
         } else if (sources.exists() || generate) {
-            IMappingFile obf_to_srg = IMappingFile.load(obf2srg);
-            Set<String> vanilla = obf_to_srg.getClasses().stream().map(IMappingFile.INode::getMapped).collect(Collectors.toSet());
+            Set<String> vanilla = MappingCache.getMappedClasses(obf2srg);
 
-            McpNames map = McpNames.load(names);
+            McpNames map = MappingCache.loadNames(project, names);
 
             if (!sources.getParentFile().exists())
                 sources.getParentFile().mkdirs();
@@ -1187,23 +1282,12 @@ public class MinecraftUserRepo extends BaseRepo {
             Charset sourceFileCharset = parent == null || parent.getConfigV2() == null ? StandardCharsets.UTF_8 :
                     Charset.forName(parent.getConfigV2().getSourceFileCharset());
             debug("    Renaming Sources, Javadocs: " + addJavadocs);
-            try(ZipInputStream zin = new ZipInputStream(new FileInputStream(patched));
-                ZipOutputStream zout = new ZipOutputStream(new FileOutputStream(sources))) {
-                ZipEntry _old;
-                while ((_old = zin.getNextEntry()) != null) {
-                    String name = _old.getName();
-                    zout.putNextEntry(Utils.getStableEntry(name));
-
-                    if (name.endsWith(".java")) {
-                        String mapped = map.rename(zin,
-                                addJavadocs && vanilla.contains(name.substring(0, name.length() - 5)),
-                                true, sourceFileCharset);
-                        IOUtils.write(mapped, zout, sourceFileCharset);
-                    } else {
-                        IOUtils.copy(zin, zout);
-                    }
-                }
-            }
+            long start = System.currentTimeMillis();
+            int count = map.renameZip(patched, sources,
+                    name -> addJavadocs && vanilla.contains(name.substring(0, name.length() - 5)),
+                    true, sourceFileCharset);
+            long time = Math.max(1, System.currentTimeMillis() - start);
+            debug("    Renamed " + count + " files in " + time + "ms (" + (count * 1000L / time) + " files/s)");
 
             Utils.updateHash(sources, HashFunction.SHA1);
             cache.save();
@@ -1246,12 +1330,12 @@ public class MinecraftUserRepo extends BaseRepo {
             Set<String> added = new HashSet<>();
             File recompTemp = cacheMapped(mapping, "recomp", "temp.jar");
             // Add all compiled code
-            try (ZipOutputStream zout = new ZipOutputStream(new FileOutputStream(recompTemp));
+            try (RawZipWriter zout = new RawZipWriter(recompTemp);
                     Stream<Path> walk = Files.walk(compiled.toPath())) {
                 for (Path path : walk.filter(Files::isRegularFile).collect(Collectors.toList())) {
                     try (InputStream fin = Files.newInputStream(path)) {
                         String name = compiled.toPath().relativize(path).toString().replace('\\', '/');
-                        zout.putNextEntry(Utils.getStableEntry(name));
+                        zout.putNextEntry(name);
                         IOUtils.copy(fin, zout);
                         zout.closeEntry();
                         added.add(name);
@@ -1260,11 +1344,23 @@ public class MinecraftUserRepo extends BaseRepo {
                 copyResources(zout, added, false);
             }
             // Reorder
-            try (FileSystem zipFs = FileSystems.newFileSystem(URI.create("jar:" + recompTemp.toURI()), Maps.newHashMap());
-                    ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(recomp));
-                    Stream<Path> walk = Files.walk(zipFs.getPath("/"))) {
+            try (RawZipFile zin = new RawZipFile(recompTemp);
+                    RawZipWriter zos = new RawZipWriter(recomp)) {
+                // Every file and its parent directories, the same as walking the jar as a file system
+                Map<String, RawZipFile.Entry> files = new HashMap<>();
+                Set<String> paths = new HashSet<>();
+                for (RawZipFile.Entry entry : zin.getEntries()) {
+                    String name = entry.isDirectory() ? entry.getName().substring(0, entry.getName().length() - 1) : entry.getName();
+                    if (!entry.isDirectory())
+                        files.putIfAbsent("/" + name, entry);
+                    paths.add("/" + name);
+                    for (int idx = name.lastIndexOf('/'); idx > 0; idx = name.lastIndexOf('/', idx - 1))
+                        paths.add("/" + name.substring(0, idx));
+                }
+                paths.remove("/");
+
                 List<String> special = ImmutableList.of("/META-INF/MANIFEST.MF");
-                List<Path> paths = walk.sorted(Comparator.comparing(Path::toString, (left, right) -> {
+                List<String> sorted = paths.stream().sorted((left, right) -> {
                     boolean containsLeft = special.contains(left);
                     boolean containsRight = special.contains(right);
                     if (containsLeft && containsRight) {
@@ -1275,19 +1371,15 @@ public class MinecraftUserRepo extends BaseRepo {
                     if (containsRight)
                         return 1;
                     return left.compareTo(right);
-                })).collect(Collectors.toList());
-                paths.remove(zipFs.getPath("/"));
-                for (Path path : paths) {
-                    String pathString = path.toString().substring(1).replace('\\', '/');
-                    boolean directory = Files.isDirectory(path);
-                    if (directory && !pathString.endsWith("/"))
-                        pathString += "/";
-                    ZipEntry zipEntry = new ZipEntry(pathString);
-                    zipEntry.setTime(628041600000L); //Java8 screws up on 0 time, so use another static time.
-                    zos.putNextEntry(zipEntry);
-                    if (Files.isRegularFile(path))
-                        Files.copy(path, zos);
-                    zos.closeEntry();
+                }).collect(Collectors.toList());
+                for (String path : sorted) {
+                    RawZipFile.Entry entry = files.get(path);
+                    if (entry == null) {
+                        zos.putNextEntry(path.substring(1) + "/");
+                        zos.closeEntry();
+                    } else {
+                        zos.copyEntry(zin, entry, path.substring(1), Utils.ZIPTIME);
+                    }
                 }
             }
             recompTemp.delete();
@@ -1341,6 +1433,15 @@ public class MinecraftUserRepo extends BaseRepo {
     private int compileTaskCount = 1;
     @Nullable
     private File compileJava(File source, File... extraDeps) {
+        return compileJava(source, false, extraDeps);
+    }
+
+    /**
+     * @param depsFirst Put the extra deps ahead of the extra data files on the classpath, so their classes win over
+     *                  any duplicates. Only the inject compile against the unmerged jars needs this.
+     */
+    @Nullable
+    private File compileJava(File source, boolean depsFirst, File... extraDeps) {
         HackyJavaCompile compile = createTask("compileJava", HackyJavaCompile.class);
         try {
             File output = project.file("build/" + compile.getName() + "/");
@@ -1351,8 +1452,14 @@ public class MinecraftUserRepo extends BaseRepo {
                 // we need to ensure that the output directory already exists
                 output.mkdirs();
             }
-            Set<File> files = Sets.newHashSet(this.extraDataFiles);
-            Collections.addAll(files, extraDeps);
+            Set<File> files;
+            if (depsFirst) {
+                files = new LinkedHashSet<>(Arrays.asList(extraDeps));
+                files.addAll(this.extraDataFiles);
+            } else {
+                files = Sets.newHashSet(this.extraDataFiles);
+                Collections.addAll(files, extraDeps);
+            }
             compile.setClasspath(project.files(files));
             String target = String.valueOf(mcp.wrapper.getConfig().getJavaTarget());
             compile.setSourceCompatibility(target);
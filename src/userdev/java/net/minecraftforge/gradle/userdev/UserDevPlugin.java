@@ -10,13 +10,18 @@ import net.minecraftforge.gradle.common.tasks.ApplyRangeMap;
 import net.minecraftforge.gradle.common.tasks.DownloadAssets;
 import net.minecraftforge.gradle.common.tasks.DownloadMCMeta;
 import net.minecraftforge.gradle.common.tasks.DownloadMavenArtifact;
+import net.minecraftforge.gradle.common.tasks.DownloadReport;
 import net.minecraftforge.gradle.common.tasks.ExtractExistingFiles;
 import net.minecraftforge.gradle.common.tasks.ExtractMCPData;
 import net.minecraftforge.gradle.common.tasks.ExtractNatives;
 import net.minecraftforge.gradle.common.tasks.ExtractRangeMap;
+import net.minecraftforge.gradle.common.tasks.PruneAssets;
+import net.minecraftforge.gradle.common.tasks.ResolutionCacheReport;
 import net.minecraftforge.gradle.common.util.BaseRepo;
+import net.minecraftforge.gradle.common.util.DigestCache;
 import net.minecraftforge.gradle.common.util.EnvironmentChecks;
 import net.minecraftforge.gradle.common.util.MinecraftRepo;
+import net.minecraftforge.gradle.common.util.ResolutionCache;
 import net.minecraftforge.gradle.common.util.Utils;
 import net.minecraftforge.gradle.common.util.VersionJson;
 import net.minecraftforge.gradle.mcp.ChannelProvidersExtension;
@@ -81,6 +86,8 @@ public class UserDevPlugin implements Plugin<Project> {
     @Override
     public void apply(@Nonnull Project project) {
         EnvironmentChecks.checkEnvironment(project);
+        DigestCache.init(project);
+        ResolutionCache.init(project);
         Utils.addRepoFilters(project);
 
         final Logger logger = project.getLogger();
@@ -116,6 +123,9 @@ public class UserDevPlugin implements Plugin<Project> {
         final TaskProvider<DownloadMCMeta> downloadMCMeta = tasks.register("downloadMCMeta", DownloadMCMeta.class);
         final TaskProvider<ExtractNatives> extractNatives = tasks.register("extractNatives", ExtractNatives.class);
         final TaskProvider<DownloadAssets> downloadAssets = tasks.register("downloadAssets", DownloadAssets.class);
+        tasks.register("pruneAssets", PruneAssets.class);
+        tasks.register("resolutionCacheReport", ResolutionCacheReport.class);
+        tasks.register("downloadReport", DownloadReport.class);
 
         extractSrg.configure(task -> task.getConfig().set(downloadMcpConfig.flatMap(DownloadMavenArtifact::getOutput)));
 
@@ -6,6 +6,7 @@
 package net.minecraftforge.gradle.userdev.tasks;
 
 import net.minecraftforge.gradle.common.tasks.JarExec;
+import net.minecraftforge.gradle.common.util.MappingCache;
 import net.minecraftforge.gradle.common.util.Utils;
 
 import net.minecraftforge.srgutils.IMappingFile;
@@ -60,10 +61,10 @@ public abstract class RenameJarInPlace extends JarExec {
         if (tempMappings.exists() && !tempMappings.delete())
             throw new IllegalStateException("Could not delete temp mappings file: " + tempMappings.getAbsolutePath());
 
-        IMappingFile mappings = IMappingFile.load(getMappings().get().getAsFile());
+        IMappingFile mappings = MappingCache.load(getMappings().get().getAsFile());
 
         for (File file : getExtraMappings().getFiles()) {
-            mappings = mappings.merge(IMappingFile.load(file));
+            mappings = mappings.merge(MappingCache.load(file));
         }
 
         mappings.write(tempMappings.toPath(), IMappingFile.Format.TSRG2, false);
@@ -7,27 +7,22 @@ package net.minecraftforge.gradle.userdev.util;
 
 import net.minecraftforge.gradle.common.util.HashFunction;
 import net.minecraftforge.gradle.common.util.HashStore;
+import net.minecraftforge.gradle.common.util.MappingCache;
 import net.minecraftforge.gradle.common.util.MavenArtifactDownloader;
 import net.minecraftforge.gradle.common.util.McpNames;
 import net.minecraftforge.gradle.common.util.Utils;
 import net.minecraftforge.gradle.mcp.MCPRepo;
 import net.minecraftforge.gradle.userdev.tasks.RenameJarSrg2Mcp;
 
-import org.apache.commons.io.IOUtils;
 import org.gradle.api.Project;
 import org.w3c.dom.Document;
 import org.w3c.dom.NodeList;
 import org.xml.sax.SAXException;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.Random;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
-import java.util.zip.ZipOutputStream;
 
 import javax.annotation.Nullable;
 import javax.xml.parsers.DocumentBuilder;
@@ -149,22 +144,8 @@ public class Deobfuscator {
                 .add("orig", original);
 
         if (!cache.isSame() || !output.exists()) {
-            McpNames map = McpNames.load(names);
-
-            try (ZipInputStream zin = new ZipInputStream(new FileInputStream(original));
-                 ZipOutputStream zout = new ZipOutputStream(new FileOutputStream(output))) {
-                ZipEntry _old;
-                while ((_old = zin.getNextEntry()) != null) {
-                    zout.putNextEntry(Utils.getStableEntry(_old.getName()));
-
-                    if (_old.getName().endsWith(".java")) {
-                        String mapped = map.rename(zin, false);
-                        IOUtils.write(mapped, zout, StandardCharsets.UTF_8);
-                    } else {
-                        IOUtils.copy(zin, zout);
-                    }
-                }
-            }
+            McpNames map = MappingCache.loadNames(project, names);
+            map.renameZip(original, output, name -> false, true, StandardCharsets.UTF_8);
 
             Utils.updateHash(output, HashFunction.SHA1);
             cache.save();